@@ -0,0 +1,484 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.forwoods.deco.buhlmann.ZHL16C.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DecoAlgorithm;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.GasIndex;
+import org.forwoods.deco.common.Laws;
+import org.forwoods.deco.common.PlanBuilder;
+import org.forwoods.deco.common.PlanMetrics.Inserted;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.StateCodec;
+
+/**
+ * Buhlmann ZH-L16C with gradient factors.
+ * The low gradient factor applies at the first stop and the factor
+ * is increased linearly to the high gradient factor at the surface.
+ *
+ * Every plan point gets its own state but the state of a segment is written
+ * straight into the arrays of the end point so nothing is allocated per compartment.
+ * The stop search works in the states of the stop's own points and time to surface
+ * queries reuse scratch states so neither allocates any other states
+ * @author Tom
+ *
+ */
+public class BuhlmannAlgo extends DecoAlgorithm<BuhlmannSettings, BuhlmannState> {
+
+	static final double WATER_VAP_BAR = WATER_VAP_PRES/UNITS_FACTOR;
+	static final double MAX_STOP_TIME = 1000;//mins - give up on a stop that never clears
+	static final int MAX_CEILING_ITERATIONS = 10;
+
+	private static final BuhlmannStateCodec CODEC = new BuhlmannStateCodec();
+	//scratch states for time to surface - one set per thread as an algorithm is shared by every plan
+	private static final ThreadLocal<BuhlmannState[]> SCRATCH = ThreadLocal.withInitial(
+			()->new BuhlmannState[]{new BuhlmannState(), new BuhlmannState(), new BuhlmannState()});
+
+	@Override
+	public StateCodec<BuhlmannState> getStateCodec() {
+		return CODEC;
+	}
+
+	/**
+	 * Plan a dive at several gradient factor pairs to compare conservatism.
+	 * The descent and bottom don't depend on the gradient factors so they are only planned once
+	 * @param userPlan the plan - its other settings are used for every pair
+	 * @param gradientFactors pairs of low and high gradient factors
+	 * @return a calculated plan for each pair in the same order
+	 * @see #calculateAscents(DivePlan, List)
+	 */
+	public List<DivePlan<BuhlmannSettings, BuhlmannState>> sweepGradientFactors(
+			DivePlan<BuhlmannSettings, BuhlmannState> userPlan, float[]... gradientFactors) {
+		List<BuhlmannSettings> pairs = new ArrayList<>(gradientFactors.length);
+		for (float[] gf:gradientFactors) {
+			BuhlmannSettings settings = userPlan.getAlgoSettings().clone();
+			settings.gfLow = gf[0];
+			settings.gfHigh = gf[1];
+			pairs.add(settings);
+		}
+		return calculateAscents(userPlan, pairs);
+	}
+
+	@Override
+	protected void initialise(BuhlmannSettings settings, PlanPoint<BuhlmannState> start) {
+		BuhlmannState state = stateFor(start, null);
+		state.surfacePressure = metersToBar(0, settings.atmosphericPressure);
+		state.firstStop = 0;
+		//saturated on air at the surface
+		Arrays.fill(state.n2, (state.surfacePressure-WATER_VAP_BAR)*Gas.AIR.getPercent(GAS.N2));
+		Arrays.fill(state.he, 0);
+	}
+
+	@Override
+	protected void surfaceInterval(BuhlmannSettings settings, BuhlmannState lastState, double interval,
+			PlanPoint<BuhlmannState> start) {
+		BuhlmannState state = stateFor(start, lastState);
+		//breathing air at the surface
+		flat(lastState, state, Gas.AIR, 0, interval);
+		state.firstStop = 0;
+	}
+
+	@Override
+	protected void decendingSegment(PlanPoint<BuhlmannState> last, PlanPoint<BuhlmannState> next) {
+		movingSegment(last, next);
+		//going down again so the gradient factors need to be anchored again on the next ascent
+		next.algoState.firstStop = 0;
+	}
+
+	@Override
+	protected void flatSegment(PlanPoint<BuhlmannState> last, PlanPoint<BuhlmannState> next) {
+		BuhlmannState from = last.algoState;
+		BuhlmannState to = stateFor(next, from);
+		flat(from, to, last.gas, last.depth, next.time-last.time);
+	}
+
+	@Override
+	protected void ascending(DivePlan<BuhlmannSettings, BuhlmannState> divePlan, PlanBuilder<BuhlmannState> builder,
+			PlanPoint<BuhlmannState> next, PlanPoint<BuhlmannState> last) {
+		BuhlmannSettings settings = divePlan.getAlgoSettings();
+		BuhlmannState state = last.algoState;
+
+		double firstStop = state.firstStop;
+		if (firstStop<=0) {
+			firstStop = firstStop(state, settings, next.depth);
+		}
+
+		double stop = shallowestStop(state, settings, firstStop, next.depth, last.depth);
+		if (stop<=next.depth) {
+			//no stop needed before the next point
+			double arrival = last.time+ascentTime(last.depth, next.depth, settings);
+			if (next.gas==null) {
+				next.gas = last.gas;
+			}
+			if (next.isDurationPoint()) {
+				//arrive and then hold the depth for the duration
+				PlanPoint<BuhlmannState> arrivalPoint = new PlanPoint<>(next.depth, arrival, last.gas, false, false, false);
+				ascendingSegment(last, arrivalPoint, state.firstStop);
+				trackGasUsed(last, arrivalPoint, settings);
+				inserted(Inserted.ARRIVAL);
+				next.time = roundTime(arrival+next.duration);
+				builder.emit(arrivalPoint);
+				builder.push(next);
+				return;
+			}
+			next.time = Math.max(next.time, arrival);
+			ascendingSegment(last, next, state.firstStop);
+			trackGasUsed(last, next, settings);
+			builder.emit(next);
+			return;
+		}
+
+		Gas stopGas = pickBest(divePlan, stop);
+		if (stopGas==null) {
+			stopGas = last.gas;
+		}
+		double nextLevel = levelBelow(stop, next.depth, settings);
+
+		if (stop<last.depth) {
+			//ascend to the stop
+			double arrival = last.time+ascentTime(last.depth, stop, settings);
+			PlanPoint<BuhlmannState> stopStart = new PlanPoint<>(stop, arrival, last.gas, false, false, false);
+			ascendingSegment(last, stopStart, firstStop);
+			trackGasUsed(last, stopStart, settings);
+			builder.emit(stopStart);
+			last = stopStart;
+		}
+		stop(divePlan, builder, last, stopGas, nextLevel, firstStop);
+		builder.push(next);
+	}
+
+	/**
+	 * Emit a stop that starts at the given point - a gas switch if the stop gas is different and then
+	 * the end of the stop. The points are given the states calculated by the stop search so the
+	 * stop in the plan is exactly the one the search found
+	 */
+	private void stop(DivePlan<BuhlmannSettings, BuhlmannState> divePlan, PlanBuilder<BuhlmannState> builder,
+			PlanPoint<BuhlmannState> start, Gas stopGas, double nextLevel, double firstStop) {
+		BuhlmannSettings settings = divePlan.getAlgoSettings();
+		PlanPoint<BuhlmannState> switchPoint = null;
+		if (stopGas!=start.gas) {
+			switchPoint = new PlanPoint<>(start.depth, start.time+settings.switchTime, stopGas, false, false, false);
+			switchPoint.algoState = new BuhlmannState();
+		}
+		BuhlmannState end = new BuhlmannState();
+		double endTime = stopEnd(start.algoState, start.time, start.gas, start.depth, stopGas, nextLevel, firstStop,
+				settings, switchPoint==null?null:switchPoint.algoState, end);
+		inserted(Inserted.STOP);
+
+		PlanPoint<BuhlmannState> last = start;
+		if (switchPoint!=null) {
+			switchPoint.algoState.firstStop = firstStop;
+			trackGasUsed(start, switchPoint, settings);
+			builder.emit(switchPoint);
+			inserted(Inserted.SWITCH);
+			last = switchPoint;
+		}
+		PlanPoint<BuhlmannState> endPoint = new PlanPoint<>(start.depth, endTime, stopGas, false, false, false);
+		endPoint.algoState = end;
+		end.firstStop = firstStop;
+		trackGasUsed(last, endPoint, settings);
+		builder.emit(endPoint);
+	}
+
+	@Override
+	protected void loggedSegment(BuhlmannSettings settings, BuhlmannState from, BuhlmannState to, Gas gas,
+			double fromDepth, double toDepth, double time) {
+		moving(from, to, gas, fromDepth, toDepth, time);
+		//like a plan the low gradient factor is anchored once the diver can't go straight up
+		if (to.firstStop<=0 && to.ceiling(settings.gfHigh)>0) {
+			to.firstStop = firstStop(to, settings, 0);
+		}
+	}
+
+	/**
+	 * The ceiling with the gradient factor for the depth of the ceiling
+	 */
+	@Override
+	protected double ceiling(BuhlmannSettings settings, BuhlmannState state) {
+		double ceiling = state.ceiling(settings.gfHigh);
+		if (state.firstStop<=0 || ceiling<=0) {
+			return ceiling;
+		}
+		//a deeper ceiling has a lower gradient factor so this only gets deeper
+		for (int i=0;i<MAX_CEILING_ITERATIONS;i++) {
+			double deeper = state.ceiling(gradientFactor(settings, state.firstStop, ceiling));
+			if (deeper-ceiling<0.01) {
+				return deeper;
+			}
+			ceiling = deeper;
+		}
+		return ceiling;
+	}
+
+	/**
+	 * The largest difference in inert gas pressure (bar) of any compartment
+	 */
+	@Override
+	protected double loadingDifference(BuhlmannState a, BuhlmannState b) {
+		double difference = 0;
+		for (int i=0;i<COMPARTMENTS;i++) {
+			difference = Math.max(difference, Math.abs(a.n2[i]-b.n2[i]));
+			difference = Math.max(difference, Math.abs(a.he[i]-b.he[i]));
+		}
+		return difference;
+	}
+
+	private void ascendingSegment(PlanPoint<BuhlmannState> last, PlanPoint<BuhlmannState> next, double firstStop) {
+		movingSegment(last, next);
+		next.algoState.firstStop = firstStop;
+	}
+
+	/**
+	 * Apply the Schreiner equation to every compartment for a segment
+	 * where the depth changes at a constant rate
+	 */
+	private void movingSegment(PlanPoint<BuhlmannState> last, PlanPoint<BuhlmannState> next) {
+		BuhlmannState from = last.algoState;
+		BuhlmannState to = stateFor(next, from);
+		moving(from, to, last.gas, last.depth, next.depth, next.time-last.time);
+	}
+
+	/**
+	 * Apply the Schreiner equation to every compartment
+	 * from and to must be different states
+	 */
+	private void moving(BuhlmannState from, BuhlmannState to, Gas gas, double fromDepth, double toDepth, double time) {
+		if (time<=0) {
+			to.copyFrom(from);
+			return;
+		}
+		to.surfacePressure = from.surfacePressure;
+		to.firstStop = from.firstStop;
+
+		double fN2 = gas.getPercent(GAS.N2);
+		double fHe = gas.getPercent(GAS.HE);
+		double startInsp = ambient(from, fromDepth)-WATER_VAP_BAR;
+		double rate = (toDepth-fromDepth)/UNITS_FACTOR/time;
+
+		double n2Insp = startInsp*fN2;
+		double n2Rate = rate*fN2;
+		double heInsp = startInsp*fHe;
+		double heRate = rate*fHe;
+		double[] n2Factors = N2_FACTORS.get(time);
+		if (n2Factors!=null) {
+			Laws.schreiner(n2Insp, n2Rate, heInsp, heRate, time, N2_K, HE_K, n2Factors, HE_FACTORS.get(time),
+					from.n2, from.he, to.n2, to.he);
+			return;
+		}
+		for (int i=0;i<COMPARTMENTS;i++) {
+			to.n2[i] = Laws.schreiner(n2Insp, n2Rate, time, N2_K[i], from.n2[i]);
+			to.he[i] = Laws.schreiner(heInsp, heRate, time, HE_K[i], from.he[i]);
+		}
+	}
+
+	/**
+	 * Apply the Haldane equation to every compartment for a period at constant depth
+	 * from and to may be the same state
+	 */
+	private void flat(BuhlmannState from, BuhlmannState to, Gas gas, double depth, double time) {
+		to.surfacePressure = from.surfacePressure;
+		to.firstStop = from.firstStop;
+		if (time<=0) {
+			if (to!=from) {
+				to.copyFrom(from);
+			}
+			return;
+		}
+		double insp = ambient(from, depth)-WATER_VAP_BAR;
+		double n2Insp = insp*gas.getPercent(GAS.N2);
+		double heInsp = insp*gas.getPercent(GAS.HE);
+		double[] n2Factors = N2_FACTORS.get(time);
+		if (n2Factors!=null) {
+			Laws.haldane(from.n2, from.he, n2Insp, heInsp, n2Factors, HE_FACTORS.get(time), to.n2, to.he);
+			return;
+		}
+		for (int i=0;i<COMPARTMENTS;i++) {
+			to.n2[i] = Laws.haldane(from.n2[i], n2Insp, N2_K[i], time);
+			to.he[i] = Laws.haldane(from.he[i], heInsp, HE_K[i], time);
+		}
+	}
+
+	/**
+	 * Find the runtime at which a stop can end - including the time for any gas switch.
+	 * The stop is extended a minute at a time so the candidate minutes only cost a multiply-add
+	 * per compartment. The states it leaves in switched and end are the ones the stop is planned with
+	 * (see {@link #stop}) so the ascent from the end of the stop agrees with the stop length exactly
+	 * @param stopStart the state on arrival at the stop - not changed
+	 * @param arrival the runtime on arrival at the stop
+	 * @param arrivalGas the gas breathed on arrival
+	 * @param stopGas the gas to be breathed for the stop
+	 * @param nextLevel the depth we need to be able to ascend to
+	 * @param switched filled with the state at the end of the gas switch - only used if the gas changes
+	 * @param end filled with the state at the end of the stop - must not be stopStart or switched
+	 * @return the runtime at the end of the stop
+	 */
+	private double stopEnd(BuhlmannState stopStart, double arrival, Gas arrivalGas, double depth, Gas stopGas,
+			double nextLevel, double firstStop, BuhlmannSettings settings, BuhlmannState switched, BuhlmannState end) {
+		double startTime = arrival;
+		if (stopGas!=arrivalGas) {
+			//the switch is breathed on the old gas
+			double switchEnd = arrival+settings.switchTime;
+			flat(stopStart, switched, arrivalGas, depth, switchEnd-arrival);
+			stopStart = switched;
+			startTime = switchEnd;
+		}
+
+		double endTime = padTime(Math.max(startTime, arrival+settings.minStop));
+		flat(stopStart, end, stopGas, depth, endTime-startTime);
+		//then extend a minute at a time - these use the cached exponential factors
+		while (!canAscendTo(end, settings, firstStop, nextLevel) && endTime-arrival<MAX_STOP_TIME) {
+			flat(end, end, stopGas, depth, 1);
+			endTime+=1;
+		}
+		return endTime;
+	}
+
+	/**
+	 * The time to surface from a state - the same ascent and stops as a plan would make
+	 * but only the states are calculated, no plan points are created.
+	 * @param settings the settings for the ascent
+	 * @param gases the gases that can be switched to on the ascent
+	 * @param state the state to ascend from - not changed
+	 * @param depth the depth to ascend from
+	 * @param gas the gas being breathed
+	 * @param runtime the runtime at the start of the ascent - stops end on whole minutes of runtime
+	 * @return the time (mins) to reach the surface
+	 */
+	public double timeToSurface(BuhlmannSettings settings, GasIndex gases, BuhlmannState state,
+			double depth, Gas gas, double runtime) {
+		BuhlmannState[] scratch = SCRATCH.get();
+		BuhlmannState current = scratch[0];
+		BuhlmannState next = scratch[1];
+		BuhlmannState switched = scratch[2];
+		current.copyFrom(state);
+		double firstStop = state.firstStop;
+		if (firstStop<=0) {
+			firstStop = firstStop(state, settings, 0);
+		}
+		double time = runtime;
+		while (depth>0) {
+			double stop = shallowestStop(current, settings, firstStop, 0, depth);
+			if (stop<depth) {
+				double ascent = ascentTime(depth, stop, settings);
+				moving(current, next, gas, depth, stop, ascent);
+				BuhlmannState swap = current;
+				current = next;
+				next = swap;
+				time += ascent;
+				depth = stop;
+				if (depth<=0) break;
+			}
+			Gas stopGas = gases.pickBest(depth);
+			if (stopGas==null) {
+				stopGas = gas;
+			}
+			time = stopEnd(current, time, gas, depth, stopGas, levelBelow(depth, 0, settings), firstStop,
+					settings, switched, next);
+			BuhlmannState swap = current;
+			current = next;
+			next = swap;
+			gas = stopGas;
+		}
+		return time-runtime;
+	}
+
+	/**
+	 * @param divePlan a calculated plan
+	 * @param point one of the plan's result points
+	 * @return the time (mins) to surface from the point on the plan's gases
+	 */
+	public double timeToSurface(DivePlan<BuhlmannSettings, BuhlmannState> divePlan, PlanPoint<BuhlmannState> point) {
+		return timeToSurface(divePlan.getAlgoSettings(), divePlan.getGasIndex(), point.algoState,
+				point.depth, point.gas, point.time);
+	}
+
+	/**
+	 * @return the depth the low gradient factor is anchored at - 0 if no stop is needed
+	 */
+	private double firstStop(BuhlmannState state, BuhlmannSettings settings, double target) {
+		double ceiling = state.ceiling(settings.gfLow);
+		if (ceiling<=target) {
+			return 0;
+		}
+		double depth = target;
+		while (depth<ceiling) {
+			depth = nextLevel(depth, settings);
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the shallowest stop level (or target) that can currently be ascended to
+	 */
+	private double shallowestStop(BuhlmannState state, BuhlmannSettings settings, double firstStop,
+			double target, double current) {
+		double depth = target;
+		while (depth<current && !canAscendTo(state, settings, firstStop, depth)) {
+			depth = nextLevel(depth, settings);
+		}
+		return Math.min(depth, current);
+	}
+
+	private boolean canAscendTo(BuhlmannState state, BuhlmannSettings settings, double firstStop, double depth) {
+		return state.ceiling(gradientFactor(settings, firstStop, depth))<=depth+1e-9;
+	}
+
+	/**
+	 * @return the next stop depth deeper than depth
+	 */
+	private double nextLevel(double depth, BuhlmannSettings settings) {
+		if (depth<settings.lastStopDepth) {
+			return settings.lastStopDepth;
+		}
+		return (Math.floor(depth/settings.stepSize+1e-9)+1)*settings.stepSize;
+	}
+
+	/**
+	 * @return the deepest stop depth (or the target) shallower than stop
+	 */
+	private double levelBelow(double stop, double target, BuhlmannSettings settings) {
+		double level = target;
+		for (double depth=nextLevel(target, settings); depth<stop; depth=nextLevel(depth, settings)) {
+			level = depth;
+		}
+		return level;
+	}
+
+	static double gradientFactor(BuhlmannSettings settings, double firstStop, double depth) {
+		if (firstStop<=0) {
+			return settings.gfHigh;
+		}
+		if (depth>=firstStop) {
+			return settings.gfLow;
+		}
+		return settings.gfHigh - (settings.gfHigh-settings.gfLow)*depth/firstStop;
+	}
+
+	private double ascentTime(double from, double to, BuhlmannSettings settings) {
+		double time = (from-to)/settings.ascentRate;
+		if (to==0 && from<=settings.lastStopDepth) {
+			time = Math.max(time, settings.lastAscentTime);
+		}
+		return time;
+	}
+
+	private static double ambient(BuhlmannState state, double depth) {
+		return depth/UNITS_FACTOR+state.surfacePressure;
+	}
+
+	private BuhlmannState stateFor(PlanPoint<BuhlmannState> point, BuhlmannState from) {
+		BuhlmannState state = point.algoState;
+		if (state==null || state==from) {
+			state = new BuhlmannState();
+			point.algoState = state;
+		}
+		return state;
+	}
+
+}
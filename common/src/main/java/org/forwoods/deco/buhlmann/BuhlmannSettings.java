@@ -0,0 +1,19 @@
+package org.forwoods.deco.buhlmann;
+
+import org.forwoods.deco.common.DiveSettings;
+
+/**
+ * @author Tom
+ * Settings for the Buhlmann ZH-L16C algorithm
+ * Conservatism is applied with gradient factors
+ */
+public class BuhlmannSettings extends DiveSettings {
+
+	public float gfLow=0.3f;//gradient factor applied at the first stop
+	public float gfHigh=0.8f;//gradient factor applied at the surface
+
+	@Override
+	public BuhlmannSettings clone() {
+		return (BuhlmannSettings)super.clone();
+	}
+}
@@ -0,0 +1,150 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.forwoods.deco.buhlmann.ZHL16C.*;
+
+import org.forwoods.deco.common.AlgoState;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.Laws;
+
+/**
+ * @author Tom
+ * Inert gas loading of the ZH-L16C compartments.
+ * Pressures are held in flat arrays indexed by compartment so that segments
+ * can be calculated in place without creating an object per compartment
+ */
+public class BuhlmannState implements AlgoState {
+
+	static final double NDL_PRECISION = 1/600d;//mins - a tenth of a second
+
+	public final double[] n2 = new double[COMPARTMENTS];//bar
+	public final double[] he = new double[COMPARTMENTS];//bar
+
+	double surfacePressure;//bar
+	double firstStop;//depth the low gradient factor applies at - 0 if the ascent has not needed a stop
+
+	public BuhlmannState() {
+	}
+
+	public BuhlmannState(BuhlmannState other) {
+		copyFrom(other);
+	}
+
+	/**
+	 * overwrite this state with the contents of another
+	 * @param other the state to copy
+	 */
+	public void copyFrom(BuhlmannState other) {
+		System.arraycopy(other.n2, 0, n2, 0, COMPARTMENTS);
+		System.arraycopy(other.he, 0, he, 0, COMPARTMENTS);
+		surfacePressure = other.surfacePressure;
+		firstStop = other.firstStop;
+	}
+
+	/**
+	 * @param gf the gradient factor to apply
+	 * @return the lowest ambient pressure (bar) tolerated by all compartments
+	 */
+	public double toleratedPressure(double gf) {
+		double tolerated = 0;
+		for (int i=0;i<COMPARTMENTS;i++) {
+			double tol = tolerated(i, n2[i], he[i], gf);
+			if (tol>tolerated) tolerated = tol;
+		}
+		return tolerated;
+	}
+
+	/**
+	 * @param gf the gradient factor to apply
+	 * @return the depth (m) of the ceiling - negative if the diver could ascend above the surface
+	 */
+	public double ceiling(double gf) {
+		return (toleratedPressure(gf)-surfacePressure)*BuhlmannAlgo.UNITS_FACTOR;
+	}
+
+	/**
+	 * The no decompression limit - how much longer the diver can stay at a depth and still
+	 * ascend straight to the surface. Off gassing on the way up is ignored.
+	 * <p>
+	 * Each compartment's time to reach its surfacing M-value is found by inverting the Haldane equation.
+	 * When a compartment holds or breathes helium its M-value moves with the mix of the two gases so
+	 * the time is found by bisection instead.
+	 * @param depth the depth (m)
+	 * @param gas the gas breathed at the depth
+	 * @param gf the gradient factor to apply at the surface
+	 * @return the limit in minutes - 0 if already over it and positive infinity if it is never reached
+	 */
+	public double noDecoLimit(double depth, Gas gas, double gf) {
+		if (ceiling(gf)>0) {
+			return 0;
+		}
+		double insp = depth/BuhlmannAlgo.UNITS_FACTOR+surfacePressure-BuhlmannAlgo.WATER_VAP_BAR;
+		double n2Insp = insp*gas.getPercent(GAS.N2);
+		double heInsp = insp*gas.getPercent(GAS.HE);
+		double limit = Double.POSITIVE_INFINITY;
+		for (int i=0;i<COMPARTMENTS;i++) {
+			double time;
+			if (he[i]==0 && heInsp==0) {
+				//nitrogen only so the M-value is fixed
+				double mValue = N2_A[i]*gf + surfacePressure*(gf/N2_B[i] + 1 - gf);
+				time = Laws.haldaneTime(n2[i], n2Insp, N2_K[i], mValue);
+			}
+			else {
+				time = mixedLimit(i, n2Insp, heInsp, gf);
+			}
+			if (time<limit) limit = time;
+		}
+		return limit;
+	}
+
+	/**
+	 * Bisect for the time a compartment loading both gases reaches its surfacing M-value
+	 */
+	private double mixedLimit(int i, double n2Insp, double heInsp, double gf) {
+		//saturated at the depth
+		if (tolerated(i, n2Insp, heInsp, gf)<=surfacePressure) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double low = 0;
+		double high = 1;
+		while (tolerated(i, Laws.haldane(n2[i], n2Insp, N2_K[i], high),
+				Laws.haldane(he[i], heInsp, HE_K[i], high), gf)<=surfacePressure) {
+			low = high;
+			high *= 2;
+		}
+		while (high-low>NDL_PRECISION) {
+			double mid = (low+high)/2;
+			if (tolerated(i, Laws.haldane(n2[i], n2Insp, N2_K[i], mid),
+					Laws.haldane(he[i], heInsp, HE_K[i], mid), gf)<=surfacePressure) {
+				low = mid;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the lowest ambient pressure (bar) tolerated by compartment i with the given loading
+	 */
+	private static double tolerated(int i, double pN2, double pHe, double gf) {
+		double p = pN2+pHe;
+		double a = (N2_A[i]*pN2 + HE_A[i]*pHe)/p;
+		double b = (N2_B[i]*pN2 + HE_B[i]*pHe)/p;
+		return (p - a*gf)/(gf/b + 1 - gf);
+	}
+
+	public double getFirstStop() {
+		return firstStop;
+	}
+
+	/**
+	 * The state is in deco once the ascent has been forced to stop
+	 */
+	@Override
+	public boolean isDeco() {
+		return firstStop>0;
+	}
+
+}
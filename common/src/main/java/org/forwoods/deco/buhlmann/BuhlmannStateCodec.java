@@ -0,0 +1,38 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.forwoods.deco.buhlmann.ZHL16C.COMPARTMENTS;
+
+import org.forwoods.deco.common.StateCodec;
+
+/**
+ * @author Tom
+ * Packs a state as the N2 loadings, the He loadings, the surface pressure and the first stop
+ */
+public class BuhlmannStateCodec implements StateCodec<BuhlmannState> {
+
+	private static final int WIDTH = COMPARTMENTS*2+2;
+
+	@Override
+	public int width() {
+		return WIDTH;
+	}
+
+	@Override
+	public void encode(BuhlmannState state, double[] dest, int offset) {
+		System.arraycopy(state.n2, 0, dest, offset, COMPARTMENTS);
+		System.arraycopy(state.he, 0, dest, offset+COMPARTMENTS, COMPARTMENTS);
+		dest[offset+COMPARTMENTS*2] = state.surfacePressure;
+		dest[offset+COMPARTMENTS*2+1] = state.firstStop;
+	}
+
+	@Override
+	public BuhlmannState decode(double[] src, int offset) {
+		BuhlmannState state = new BuhlmannState();
+		System.arraycopy(src, offset, state.n2, 0, COMPARTMENTS);
+		System.arraycopy(src, offset+COMPARTMENTS, state.he, 0, COMPARTMENTS);
+		state.surfacePressure = src[offset+COMPARTMENTS*2];
+		state.firstStop = src[offset+COMPARTMENTS*2+1];
+		return state;
+	}
+
+}
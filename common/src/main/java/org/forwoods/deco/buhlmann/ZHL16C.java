@@ -0,0 +1,52 @@
+package org.forwoods.deco.buhlmann;
+
+import org.forwoods.deco.common.ExpFactorTable;
+
+/**
+ * @author Tom
+ * Compartment constants for the ZH-L16C model (using compartment 1b)
+ * All arrays are indexed by compartment number
+ */
+public class ZHL16C {
+
+	public static final int COMPARTMENTS = 16;
+
+	static final double[] N2_HALF_TIMES = {
+		5.0, 8.0, 12.5, 18.5, 27.0, 38.3, 54.3, 77.0,
+		109.0, 146.0, 187.0, 239.0, 305.0, 390.0, 498.0, 635.0};
+	static final double[] N2_A = {
+		1.1696, 1.0, 0.8618, 0.7562, 0.62, 0.5043, 0.441, 0.4,
+		0.375, 0.35, 0.3295, 0.3065, 0.2835, 0.261, 0.248, 0.2327};
+	static final double[] N2_B = {
+		0.5578, 0.6514, 0.7222, 0.7825, 0.8126, 0.8434, 0.8693, 0.891,
+		0.9092, 0.9222, 0.9319, 0.9403, 0.9477, 0.9544, 0.9602, 0.9653};
+
+	static final double[] HE_HALF_TIMES = {
+		1.88, 3.02, 4.72, 6.99, 10.21, 14.48, 20.53, 29.11,
+		41.2, 55.19, 70.69, 90.34, 115.29, 147.42, 188.24, 240.03};
+	static final double[] HE_A = {
+		1.6189, 1.383, 1.1919, 1.0458, 0.922, 0.8205, 0.7305, 0.6502,
+		0.595, 0.5545, 0.5333, 0.5189, 0.5181, 0.5176, 0.5172, 0.5119};
+	static final double[] HE_B = {
+		0.477, 0.5747, 0.6527, 0.7223, 0.7582, 0.7957, 0.8279, 0.8553,
+		0.8757, 0.8903, 0.8997, 0.9073, 0.9122, 0.9171, 0.9217, 0.9267};
+
+	//gas time constants (ln2/half time)
+	static final double[] N2_K = timeConstants(N2_HALF_TIMES);
+	static final double[] HE_K = timeConstants(HE_HALF_TIMES);
+
+	//exp(-k*t) for whole minute intervals up to 6 hours
+	static final ExpFactorTable N2_FACTORS = new ExpFactorTable(N2_K, 1, 360);
+	static final ExpFactorTable HE_FACTORS = new ExpFactorTable(HE_K, 1, 360);
+
+	private static double[] timeConstants(double[] halfTimes) {
+		double[] k = new double[halfTimes.length];
+		for (int i=0;i<halfTimes.length;i++) {
+			k[i] = Math.log(2)/halfTimes[i];
+		}
+		return k;
+	}
+
+	private ZHL16C() {
+	}
+}
@@ -1,8 +1,20 @@
 package org.forwoods.deco.common;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.PlanMetrics.Inserted;
+import org.forwoods.deco.common.PlanMetrics.Phase;
 
 
 /**
@@ -10,6 +22,12 @@ import java.util.List;
  * It's implemented methods will produce a plan which includes ascent and descent
  * segments at the prescribed rates and includes gas switches to ensure that the
  * optimum gas is used in each segment.
+ * <p>
+ * Implementations must not keep any per-plan state in fields - everything belongs
+ * in the plan, its points and their STATE - so that a single instance can be shared
+ * by any number of threads calculating plans at the same time.
+ * Planning fills in the user points of the plan being calculated so a user plan
+ * (or its points) must not be calculated by two threads at once.
  * @author Tom
  *
  * @param <SETTINGS> Type parameter for the Algorithm settings used by this implementation 
@@ -19,88 +37,387 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 	
 	public final static double WATER_VAP_PRES=0.567f;//.493 in C
 	public final static double UNITS_FACTOR = 10.1325f;//m/atmosphere
+	public final static double CNS_HALF_TIME = 90;//mins
+
+	private volatile PlanMetrics metrics = PlanMetrics.NONE;
+	//the timings and counts of the plan being calculated on this thread - not set if metrics are off
+	private final ThreadLocal<Totals> totals = new ThreadLocal<>();
+
+	/**
+	 * @param metrics where to send planning timings and counts - set before planning starts
+	 */
+	public void setMetrics(PlanMetrics metrics) {
+		this.metrics = metrics==null?PlanMetrics.NONE:metrics;
+	}
+
+	public PlanMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Calculate a batch of independent plans in parallel on the common fork-join pool
+	 * @param userPlans the plans to calculate - each must be a separate plan
+	 * @return the calculated plans in the same order as userPlans
+	 */
+	public List<DivePlan<SETTINGS, STATE>> calculateDives(Collection<DivePlan<SETTINGS, STATE>> userPlans) {
+		return calculateDives(userPlans.stream()).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Calculate a batch of independent plans in parallel on the given pool
+	 * @param userPlans the plans to calculate - each must be a separate plan
+	 * @param pool the pool to do the calculations on
+	 * @return the calculated plans in the same order as userPlans
+	 */
+	public List<DivePlan<SETTINGS, STATE>> calculateDives(Collection<DivePlan<SETTINGS, STATE>> userPlans, ForkJoinPool pool) {
+		//a parallel stream started from within a pool runs its tasks in that pool
+		return pool.submit(() -> calculateDives(userPlans)).join();
+	}
+	
+	/**
+	 * Streaming variant of {@link #calculateDives(Collection)}.
+	 * Plans are calculated in parallel as the stream is consumed and keep the encounter
+	 * order of the input, so forEachOrdered or collect see them in input order
+	 * @param userPlans the plans to calculate - each must be a separate plan
+	 * @return the calculated plans
+	 */
+	public Stream<DivePlan<SETTINGS, STATE>> calculateDives(Stream<DivePlan<SETTINGS, STATE>> userPlans) {
+		return userPlans.parallel().map(this::calculateDive);
+	}
 	
+	/**
+	 * Calculate a plan.
+	 * If the plan has already been calculated and only its user points have been changed since
+	 * (using {@link DivePlan#setUserPoint(int, PlanPoint)} etc.) planning resumes from the
+	 * point before the first change and the earlier result points are shared with the new plan.
+	 * The user points are copied and never changed by planning.
+	 * @param userPlan the plan to calculate
+	 * @return a new calculated plan
+	 * @throws CancellationException if the thread is interrupted while planning
+	 */
 	public DivePlan<SETTINGS, STATE> calculateDive(DivePlan<SETTINGS, STATE> userPlan) {
+		return measured(()->plan(userPlan));
+	}
+
+	/**
+	 * Plan adding up the timings and counts of the plan as it goes - they are given to the metrics
+	 * once the plan is finished so the metrics aren't touched for every segment
+	 */
+	private DivePlan<SETTINGS, STATE> measured(Supplier<DivePlan<SETTINGS, STATE>> planning) {
+		PlanMetrics metrics = this.metrics;
+		if (!metrics.enabled()) {
+			return planning.get();
+		}
+		//planning a repetitive dive can calculate the last dive first
+		Totals outer = totals.get();
+		Totals current = new Totals();
+		totals.set(current);
+		long start = System.nanoTime();
+		DivePlan<SETTINGS, STATE> divePlan;
+		try {
+			divePlan = planning.get();
+		}
+		finally {
+			if (outer==null) {
+				totals.remove();
+			}
+			else {
+				totals.set(outer);
+			}
+		}
+		current.time(Phase.CALCULATE, System.nanoTime()-start);
+		current.publish(metrics, divePlan.getResultPoints().size());
+		return divePlan;
+	}
+
+	/**
+	 * Count a point added to the plan being calculated
+	 */
+	protected void inserted(Inserted point) {
+		Totals current = totals.get();
+		if (current!=null) {
+			current.inserted[point.ordinal()]++;
+		}
+	}
+
+	private DivePlan<SETTINGS, STATE> plan(DivePlan<SETTINGS, STATE> userPlan) {
 		SETTINGS settings = userPlan.getAlgoSettings();
-		List<Gas> gases = userPlan.getGases();
 		
-		List<PlanPoint<STATE>> resultPoints = new ArrayList<>();
-		PlanPoint<STATE> start = initResultPlan(userPlan, resultPoints);
-		
-		//initialise state
-		if (userPlan.getLastPlan()==null){
-			//first dive in series
-			initialise(settings, start);
+		List<PlanPoint<STATE>> planned = initPlannedPoints(userPlan);
+		PlanBuilder<STATE> builder;
+		int resumeAt = resumePoint(userPlan, planned);
+		if (resumeAt>0) {
+			builder = new PlanBuilder<>(planned, userPlan.getResultPoints(), userPlan.checkpoints, resumeAt);
 		}
 		else {
-			//TODO calculate surface interval off-gassing
+			PlanPoint<STATE> start = planned.get(0);
+			
+			//initialise state
+			if (userPlan.getLastPlan()==null){
+				//first dive in series
+				initialise(settings, start);
+			}
+			else {
+				//repetitive dive - off gas from the end of the last one
+				DivePlan<SETTINGS, STATE> lastPlan = calculated(userPlan.getLastPlan());
+				surfaceInterval(settings, lastPlan.getFinalState(), userPlan.getSurfaceInterval(), start);
+				initOxygen(lastPlan, userPlan.getSurfaceInterval(), start);
+			}
+			
+			initGasVols(userPlan,start);
+			builder = new PlanBuilder<>(planned);
 		}
-		
-		initGasVols(userPlan,resultPoints.get(0));
+		return plan(userPlan, builder);
+	}
+
+	private DivePlan<SETTINGS, STATE> plan(DivePlan<SETTINGS, STATE> userPlan, PlanBuilder<STATE> builder) {
+		SETTINGS settings = userPlan.getAlgoSettings();
+		List<Gas> gases = userPlan.getGases();
 
 		DivePlan<SETTINGS, STATE> divePlan = new DivePlan<>();
 		divePlan.algoSettings = settings;
-		divePlan.setResultPoints(resultPoints);
+		divePlan.setResultPoints(builder.getPoints());
 		divePlan.setGases(gases);
+		divePlan.gasIndex = new GasIndex(gases, settings);
 		
-		doPlan(settings,divePlan);
+		Totals current = totals.get();
+		long start = current==null?0:System.nanoTime();
+		doPlan(settings,divePlan,builder,current);
+		if (current!=null) current.time(Phase.PLAN, System.nanoTime()-start);
+		divePlan.setGasVols(builder.last().gasUsed);
+		divePlan.finalState = builder.last().algoState;
+		divePlan.lastPlan = userPlan.getLastPlan();
+		divePlan.surfaceInterval = userPlan.getSurfaceInterval();
+		divePlan.userPoints = new ArrayList<>(userPlan.getUserPoints());
+		divePlan.checkpoints = builder.getStarts();
 		
 		return divePlan;
 	}
 
-	private PlanPoint<STATE> initResultPlan(DivePlan<SETTINGS, STATE> userPlan, List<PlanPoint<STATE>> resultPoints) {
-		//copy user points to result points
-		resultPoints.addAll(userPlan.getUserPoints());
-		//adding in 0 start and end if required
-		PlanPoint<STATE> end=resultPoints.get(resultPoints.size()-1);
+	/**
+	 * Plan the same dive with several settings that only differ in how the ascent is made.
+	 * The descent and bottom are planned once with the first settings and the plans for the
+	 * others are only planned again from the first ascent - in parallel.
+	 * Settings that change the descent or bottom (rates, SAC, gas limits etc.) must not differ
+	 * @param userPlan the plan
+	 * @param ascentSettings the settings to plan with
+	 * @return a calculated plan for each of the settings in the same order
+	 */
+	public List<DivePlan<SETTINGS, STATE>> calculateAscents(DivePlan<SETTINGS, STATE> userPlan, List<SETTINGS> ascentSettings) {
+		if (ascentSettings.isEmpty()) {
+			return new ArrayList<>();
+		}
+		DivePlan<SETTINGS, STATE> first = calculateDive(userPlan.fork(ascentSettings.get(0), 0));
+		int firstAscent = firstAscent(first.getUserPoints());
+		return IntStream.range(0, ascentSettings.size()).parallel()
+				.mapToObj(i->i==0?first:calculateDive(first.fork(ascentSettings.get(i), firstAscent)))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the first user point that is ascended to - the number of points if that is the final ascent
+	 */
+	private int firstAscent(List<PlanPoint<STATE>> userPoints) {
+		double depth = 0;
+		for (int i=0;i<userPoints.size();i++) {
+			if (userPoints.get(i).depth<depth) {
+				return i;
+			}
+			depth = userPoints.get(i).depth;
+		}
+		return userPoints.size();
+	}
+
+	/**
+	 * Plan what to do if a deco gas is lost - for each of the plan's gases that can fail
+	 * (see {@link Gas#isDecoGas()}) the plan without that gas.
+	 * Each contingency carries on from the point where the gas would first have been breathed
+	 * rather than planning from the surface again - unless that is before the dive first ascends
+	 * as the gases picked on the way down depend on all the gases - and they are planned in parallel.
+	 * @param divePlan the plan - calculated first if it hasn't been
+	 * @return the contingency plan for each deco gas in the order of the plan's gases.
+	 * The plan itself is given for a gas that it never uses
+	 */
+	public Map<Gas, DivePlan<SETTINGS, STATE>> calculateContingencies(DivePlan<SETTINGS, STATE> divePlan) {
+		DivePlan<SETTINGS, STATE> base = divePlan;
+		if (base.checkpoints==null || base.getResultPoints()==null || base.firstEdit!=Integer.MAX_VALUE) {
+			base = calculateDive(base);
+		}
+		DivePlan<SETTINGS, STATE> calculated = base;
+		List<Gas> lost = base.getGases().stream().filter(Gas::isDecoGas).collect(Collectors.toList());
+		List<DivePlan<SETTINGS, STATE>> plans = lost.parallelStream()
+				.map(gas->contingency(calculated, gas))
+				.collect(Collectors.toList());
+		Map<Gas, DivePlan<SETTINGS, STATE>> contingencies = new LinkedHashMap<>();
+		for (int i=0;i<lost.size();i++) {
+			contingencies.put(lost.get(i), plans.get(i));
+		}
+		return contingencies;
+	}
+
+	private DivePlan<SETTINGS, STATE> contingency(DivePlan<SETTINGS, STATE> base, Gas lost) {
+		List<PlanPoint<STATE>> points = base.getResultPoints();
+		int lostAt = 0;
+		while (lostAt<points.size() && !lost.equals(points.get(lostAt).gas)) {
+			lostAt++;
+		}
+		if (lostAt==points.size()) {
+			return base;
+		}
+
+		//copies of the user points as dropping the gas changes them
+		DivePlan<SETTINGS, STATE> userPlan = new DivePlan<>();
+		userPlan.setAlgoSettings(base.getAlgoSettings());
+		List<PlanPoint<STATE>> userPoints = new ArrayList<>(base.getUserPoints().size());
+		for (PlanPoint<STATE> p:base.getUserPoints()) {
+			userPoints.add(new PlanPoint<>(p));
+		}
+		userPlan.setUserPoints(userPoints);
+		List<Gas> gases = new ArrayList<>(base.getGases());
+		gases.remove(lost);
+		userPlan.setGases(gases);
+		userPlan.setLastPlan(base.getLastPlan());
+		userPlan.setSurfaceInterval(base.getSurfaceInterval());
+		if (lostAt==0 || points.get(lostAt-1).getAlgoState()==null || descending(points, lostAt)) {
+			//nothing to carry on from - a plan compacted for resuming only keeps its checkpoint states.
+			//The gases picked on the way down may have been picked because the lost gas was
+			//there for later so a gas lost before the first ascent means planning from the start
+			return calculateDive(userPlan);
+		}
+
+		//carry on planning the planned point that was being planned when the gas was first used
+		List<PlanPoint<STATE>> planned = initPlannedPoints(userPlan);
+		int[] starts = base.checkpoints;
+		int resumeAt = Math.min(starts.length, planned.size())-1;
+		while (starts[resumeAt]>lostAt) {
+			resumeAt--;
+		}
+		//the kept points' volumes are copied onto the remaining gases
+		GasVolumes remaining = new GasVolumes(gases);
+		List<PlanPoint<STATE>> prefix = new ArrayList<>(lostAt);
+		for (PlanPoint<STATE> p:points.subList(0, lostAt)) {
+			PlanPoint<STATE> copy = new PlanPoint<>(p);
+			copy.algoState = p.getAlgoState();
+			copy.OTU = p.OTU;
+			copy.CNS = p.CNS;
+			copy.gasUsed = remaining.copyOf(p.gasUsed);
+			prefix.add(copy);
+		}
+		PlanBuilder<STATE> builder = new PlanBuilder<>(planned, prefix, starts, resumeAt, lostAt);
+		return measured(()->plan(userPlan, builder));
+	}
+
+	/**
+	 * @return whether the dive hasn't started to ascend by the given result point
+	 */
+	private static boolean descending(List<? extends PlanPoint<?>> points, int end) {
+		for (int i=1;i<=end;i++) {
+			if (points.get(i).depth<points.get(i-1).depth) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the first planned point that has to be planned again - 0 to plan from the start
+	 */
+	private int resumePoint(DivePlan<SETTINGS, STATE> userPlan, List<PlanPoint<STATE>> planned) {
+		int[] checkpoints = userPlan.checkpoints;
+		if (checkpoints==null || userPlan.firstEdit<=0) {
+			return 0;
+		}
+		//the surface start point may have been added in front of the user points
+		int offset = userPlan.getUserPoints().get(0).getDepth()!=0?1:0;
+		long resumeAt = (long)userPlan.firstEdit+offset;
+		resumeAt = Math.min(resumeAt, Math.min(checkpoints.length, planned.size())-1);
+		return (int)resumeAt;
+	}
+
+	/**
+	 * A calculated plan already holds its final state so a series of dives can be planned
+	 * one at a time by setting each calculated plan as the last plan of the next.
+	 * Only a last plan that hasn't been calculated is planned again.
+	 */
+	DivePlan<SETTINGS, STATE> calculated(DivePlan<SETTINGS, STATE> lastPlan) {
+		if (lastPlan.getFinalState()!=null) {
+			return lastPlan;
+		}
+		return calculateDive(lastPlan);
+	}
+
+	/**
+	 * Oxygen exposure carries over from the last dive - OTUs for the day and CNS% with a 90 minute half time
+	 */
+	void initOxygen(DivePlan<SETTINGS, STATE> lastPlan, double interval, PlanPoint<STATE> start) {
+		List<PlanPoint<STATE>> points = lastPlan.getResultPoints();
+		if (points==null || points.isEmpty()) {
+			return;
+		}
+		PlanPoint<STATE> end = points.get(points.size()-1);
+		start.OTU = end.OTU;
+		start.CNS = end.CNS*Math.pow(0.5, interval/CNS_HALF_TIME);
+	}
+
+	private List<PlanPoint<STATE>> initPlannedPoints(DivePlan<SETTINGS, STATE> userPlan) {
+		List<PlanPoint<STATE>> userPoints = userPlan.getUserPoints();
+		List<PlanPoint<STATE>> planned = new ArrayList<>(userPoints.size()+2);
 		//all plans start and end at the surface
-		if (end.getDepth()!=0)
+		//adding in 0 start and end if required
+		if (userPoints.get(0).getDepth()!=0)
 		{
-			resultPoints.add(new PlanPoint<>(0, 0, null, false, false, true));
+			planned.add(new PlanPoint<>(0, 0,null,false,false,true));
 		}
-		PlanPoint<STATE> start=resultPoints.get(0);
-		if (start.getDepth()!=0)
+		for (PlanPoint<STATE> p:userPoints) {
+			planned.add(new PlanPoint<>(p));
+		}
+		if (userPoints.get(userPoints.size()-1).getDepth()!=0)
 		{
-			resultPoints.add(0,start=new PlanPoint<>(0, 0,null,false,false,true));
+			planned.add(new PlanPoint<>(0, 0, null, false, false, true));
 		}
-		return start;
+		return planned;
 	}
 
 	private void initGasVols(DivePlan<SETTINGS, STATE> userPlan, PlanPoint<STATE> planPoint) {
-		List<Gas> gasses = userPlan.getGases();
-		planPoint.gasUsed = new HashMap<>();
-		for (Gas g:gasses) {
-			planPoint.gasUsed.put(g, 0.0);
-		}
+		planPoint.gasUsed = new GasVolumes(userPlan.getGases());
 	}
 
-	private void doPlan(SETTINGS settings, DivePlan<SETTINGS, STATE> divePlan) {
-		List<PlanPoint<STATE>> resultPoints = divePlan.getResultPoints();
+	private void doPlan(SETTINGS settings, DivePlan<SETTINGS, STATE> divePlan, PlanBuilder<STATE> builder, Totals totals) {
 		//for each point
-		for (int i=1;i<resultPoints.size();i++) {
-			PlanPoint<STATE> next = resultPoints.get(i);
-			PlanPoint<STATE> last = resultPoints.get(i-1);
+		while (builder.hasNext()) {
+			if (Thread.currentThread().isInterrupted()) {
+				//whoever wanted the plan has given up on it
+				throw new CancellationException("Planning was interrupted");
+			}
+			PlanPoint<STATE> next = builder.next();
+			PlanPoint<STATE> last = builder.last();
 			
 			double currentDepth=last.depth;
 			double newDepth=next.depth;
+			long start = totals==null?0:System.nanoTime();
+			Phase phase;
 			if (newDepth>currentDepth)
 			{
-				descending(settings, divePlan, i, next, last);
+				descending(settings, divePlan, builder, next, last);
+				phase = Phase.DESCENDING;
 			}
 			
 			else if (newDepth==currentDepth) {
-				flat(divePlan, next, last,i);
+				flat(divePlan, builder, next, last);
+				phase = Phase.FLAT;
 			}
 			
 			else {
-				ascending(divePlan, next,last, i);
+				ascending(divePlan, builder, next, last);
+				phase = Phase.ASCENDING;
 			}
+			if (totals!=null) totals.time(phase, System.nanoTime()-start);
 			
 			
 		}
 	}
 
-	private void flat(DivePlan<SETTINGS, STATE> divePlan, PlanPoint<STATE> next, PlanPoint<STATE> last, int pos) {
+	private void flat(DivePlan<SETTINGS, STATE> divePlan, PlanBuilder<STATE> builder, PlanPoint<STATE> next, PlanPoint<STATE> last) {
 		if (last.getGas()==null) {
 			last.setGas(pickStartGas(last.depth,last.depth, divePlan));
 		}
@@ -117,32 +434,36 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 			next.setGas(last.gas);
 		}
 		else if (next.gas!=last.gas) {
-			//we need to break this up with a gas switch point
-			float switchTime = divePlan.getAlgoSettings().switchTime;PlanPoint<STATE> switchPoint = new PlanPoint<>(last.depth,
-					last.time+switchTime, true);
-			switchPoint.gas= next.gas;
-			switchPoint.time = last.time+switchTime;
-			divePlan.getResultPoints().add(pos,switchPoint);
-			if (next.durationPoint) {
-				//take the switch time of the duration at this depth
-				next.duration=Math.max(0,next.duration-switchTime);
-				
-				divePlan.getResultPoints().add(pos, switchPoint);
+			float switchTime = divePlan.getAlgoSettings().switchTime;
+			if (next.durationPoint && next.duration<=switchTime) {
+				//the whole duration is taken up with the switch
+				next.time=last.time+switchTime;
 			}
 			else {
-				next.time = Math.max(next.time, switchPoint.time);
+				//we need to break this up with a gas switch point
+				PlanPoint<STATE> switchPoint = new PlanPoint<>(last.depth, switchTime, true);
+				switchPoint.gas= next.gas;
+				switchPoint.time = last.time+switchTime;
+				inserted(Inserted.SWITCH);
+				if (next.durationPoint) {
+					//take the switch time of the duration at this depth
+					next.duration=next.duration-switchTime;
+				}
+				else {
+					next.time = Math.max(next.time, switchPoint.time);
+				}
+				builder.push(next);
+				next = switchPoint;
 			}
-			next = switchPoint;
 		}
 		flatSegment(last,next);
 		trackGasUsed(last,next, divePlan.algoSettings);
+		builder.emit(next);
 	}
 
-	private void descending(SETTINGS settings, DivePlan<SETTINGS, STATE> divePlan, int i, PlanPoint<STATE> next,
-			PlanPoint<STATE> last) {
+	private void descending(SETTINGS settings, DivePlan<SETTINGS, STATE> divePlan, PlanBuilder<STATE> builder,
+			PlanPoint<STATE> next, PlanPoint<STATE> last) {
 		//we are descending
-		List<PlanPoint<STATE>> resultPoints = divePlan.getResultPoints();
-
 		double currentDepth=last.depth;
 		double newDepth=next.depth;
 		
@@ -158,16 +479,18 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 		
 		Gas endGas;
 		
-		if (!startGas.isBreathable(newDepth, settings)) {
+		GasIndex gasIndex = divePlan.getGasIndex();
+		if (!gasIndex.isBreathable(startGas, newDepth)) {
 			//the gas we are starting this segment with isn't breathable at our destination
-			endGas = next.gas = Gas.pickBest(newDepth, settings, divePlan.getGases());
+			endGas = next.gas = pickBest(divePlan, newDepth);
 			
 			//Add a duration point at the target depth for the switching
 			//the descent code below will handle the descent bit
-			newDepth = startGas.getMOD(settings);
+			newDepth = gasIndex.getMOD(startGas);
 			PlanPoint<STATE> switchPoint = new PlanPoint<>(newDepth,settings.switchTime, true);
 			switchPoint.gas = endGas;
-			resultPoints.add(i,switchPoint);
+			builder.push(next);
+			inserted(Inserted.SWITCH);
 			
 			descentdistance = newDepth-currentDepth;
 			descentTime = descentdistance/settings.descentRate;//how long it will take to do the descent
@@ -180,11 +503,13 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 			if (endGas==null) {
 				endGas = next.gas = startGas;
 			}
-			if (!endGas.equals(startGas)) {
+			if (!endGas.equals(startGas) && !next.isDurationPoint()) {
 				//add a gas switch
+				//(a switch to a fixed duration point is taken out of its duration when it is planned)
 				PlanPoint<STATE> switchPoint = new PlanPoint<>(newDepth,settings.switchTime, true);
 				switchPoint.gas = endGas;
-				resultPoints.add(i,switchPoint);
+				builder.push(next);
+				inserted(Inserted.SWITCH);
 				next = switchPoint;
 			}
 		}
@@ -195,7 +520,8 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 			PlanPoint<STATE> descentPoint = new PlanPoint<>(newDepth, descentArrival);
 			descentPoint.gas = startGas;
 			next.time = roundTime(descentArrival+next.duration);
-			resultPoints.add(i,descentPoint);
+			builder.push(next);
+			inserted(Inserted.DESCENT);
 			next = descentPoint;
 		}
 		
@@ -208,18 +534,22 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 				//we get there sooner - add a descent point
 				PlanPoint<STATE> descentPoint = new PlanPoint<>(newDepth, descentArrival);
 				descentPoint.gas = startGas;
-				resultPoints.add(i,descentPoint);
+				builder.push(next);
+				inserted(Inserted.DESCENT);
 				next = descentPoint;
 			}
 		}
 		
-		decendingSegment(resultPoints, i, last, next);
+		decendingSegment(last, next);
 		
 		trackGasUsed(last,next, settings);
+		builder.emit(next);
 	}
 
 	protected void trackGasUsed(PlanPoint<STATE> last, PlanPoint<STATE> next, SETTINGS settings) {
-		next.gasUsed = new HashMap<>(last.gasUsed);
+		Totals current = totals.get();
+		long start = current==null?0:System.nanoTime();
+		GasVolumes used = new GasVolumes(last.gasUsed);
 		
 		double startDepth = last.depth;
 		double endDepth = next.depth;
@@ -229,22 +559,36 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 				next.getAlgoState().isDeco()?settings.decoSAC:settings.bottomSAC,
 				settings.atmosphericPressure);
 		
-		addGas(last.gas, last, next, breathed);
+		used.add(last.gas, breathed);
 		if (!next.gas.equals(last.gas)) {
 			//I'm going to assume for gas vol calcs that for the switching time
 			//you are breathing both gasses simultaneously as the most conservative option
-			addGas(next.gas, last, next, breathed);
+			used.add(next.gas, breathed);
 		}
-		
+		next.gasUsed = used;
+
+		//oxygen exposure of the segment on the gas breathed for it
+		double o2 = last.gas.getPercent(GAS.O2);
+		double startPP = metersToBar(startDepth, settings.atmosphericPressure)*o2;
+		double endPP = metersToBar(endDepth, settings.atmosphericPressure)*o2;
+		next.OTU = last.OTU+OxygenToxicity.otu(startPP, endPP, time);
+		next.CNS = last.CNS+OxygenToxicity.cns(startPP, endPP, time);
+		if (current!=null) current.time(Phase.TRACK_GAS, System.nanoTime()-start);
 	}
-	
-	private void addGas(Gas gas, PlanPoint<STATE> last, PlanPoint<STATE> next, double breathed) {
-		double vol = last.gasUsed.get(gas);
-		vol+=breathed;
-		next.gasUsed.put(gas, vol);
+
+	/**
+	 * @return the breathable gas of the plan with the most O2 at the depth - null if there isn't one
+	 * @see GasIndex#pickBest(double)
+	 */
+	protected Gas pickBest(DivePlan<SETTINGS, STATE> divePlan, double depth) {
+		Totals current = totals.get();
+		long start = current==null?0:System.nanoTime();
+		Gas best = divePlan.getGasIndex().pickBest(depth);
+		if (current!=null) current.time(Phase.PICK_GAS, System.nanoTime()-start);
+		return best;
 	}
 
-	private double breathed(double startDepth, double endDepth, double time, double sac, float atmosphericPressure) {
+	static double breathed(double startDepth, double endDepth, double time, double sac, float atmosphericPressure) {
 		double avgDepth = (startDepth+endDepth)/2;
 		double avgPresBar = metersToBar(avgDepth, atmosphericPressure);
 		return avgPresBar*sac*time;
@@ -267,15 +611,23 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 		//if it is usable here - because switching is a pain
 		//if that gas isn't usable here then pick the best gas for now
 		
-		Gas end = Gas.pickBest(newDepth, divePlan.algoSettings, divePlan.getGases());
+		GasIndex gasIndex = divePlan.getGasIndex();
+		Gas end = pickBest(divePlan, newDepth);
 		
-		if (end.isBreathable(currentDepth, divePlan.algoSettings)) {
+		if (gasIndex.isBreathable(end, currentDepth)) {
 			return end;
 		}
-		else return Gas.pickBest(currentDepth, divePlan.algoSettings, divePlan.getGases());
+		else return pickBest(divePlan, currentDepth);
 		
 	}
 
+	/**
+	 * @return the codec used to keep this algorithm's states in a {@link PlanTable} - null if there isn't one
+	 */
+	public StateCodec<STATE> getStateCodec() {
+		return null;
+	}
+
 	/**
 	 * round times so durations always end on a whole minute
 	 * @param d
@@ -299,8 +651,7 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 	 * @param last The previous point
 	 * @param next the point who's state should be calculated
 	 */
-	protected abstract void decendingSegment(List<PlanPoint<STATE>> resultPoints, int i, 
-			PlanPoint<STATE> last,
+	protected abstract void decendingSegment(PlanPoint<STATE> last,
 			PlanPoint<STATE> next);
 
 	/**
@@ -319,6 +670,16 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 	 * @param start the point to initialise
 	 */
 	protected abstract void initialise(SETTINGS settings, PlanPoint<STATE> start);
+
+	/**
+	 * Initialise the state of the start point of a repetitive dive by off gassing at the surface
+	 * The last state belongs to an earlier plan and must not be changed
+	 * @param settings the settings for this plan
+	 * @param lastState the state at the end of the last dive
+	 * @param interval the surface interval in minutes
+	 * @param start the point to initialise
+	 */
+	protected abstract void surfaceInterval(SETTINGS settings, STATE lastState, double interval, PlanPoint<STATE> start);
 	
 
 
@@ -326,9 +687,69 @@ public abstract class DecoAlgorithm<SETTINGS extends DiveSettings, STATE extends
 	/**
 	 * Manage the ascent from last point to next
 	 * Most algos are going to want a lot more control over this than they do for the descent
+	 * Completed points must be emitted to the builder in order. Any points that still need
+	 * planning - including next if it isn't completed here - must be pushed back onto the builder
 	 * @param divePlan
+	 * @param builder the plan being built
 	 * @param next
 	 * @param last
 	 */
-	protected abstract void ascending(DivePlan<SETTINGS, STATE> divePlan, PlanPoint<STATE> next, PlanPoint<STATE> last, int pos);
+	protected abstract void ascending(DivePlan<SETTINGS, STATE> divePlan, PlanBuilder<STATE> builder, PlanPoint<STATE> next, PlanPoint<STATE> last);
+
+	/**
+	 * Calculate the state at the end of a segment of a logged dive (see {@link LogReplay}).
+	 * The depth changes at a constant rate and nothing is planned - no stops or gas switches.
+	 * @param settings the settings
+	 * @param from the state at the start of the segment - not changed
+	 * @param to the state to calculate - never the same object as from. A segment of no time copies from
+	 * @param gas the gas breathed
+	 * @param fromDepth the depth at the start
+	 * @param toDepth the depth at the end
+	 * @param time the length of the segment
+	 */
+	protected abstract void loggedSegment(SETTINGS settings, STATE from, STATE to, Gas gas,
+			double fromDepth, double toDepth, double time);
+
+	/**
+	 * @return the depth (m) of the ceiling of a state of a logged dive - 0 or less if there isn't one
+	 * @see #loggedSegment(DiveSettings, AlgoState, AlgoState, Gas, double, double, double)
+	 */
+	protected abstract double ceiling(SETTINGS settings, STATE state);
+
+	/**
+	 * @return how far apart the tissue loadings of two states are - in the algorithm's own units
+	 * @see ProfileSimplifier
+	 */
+	protected abstract double loadingDifference(STATE a, STATE b);
+
+	/**
+	 * The timings and counts of one plan
+	 */
+	private static final class Totals {
+		private static final Phase[] PHASES = Phase.values();
+		private static final Inserted[] INSERTED = Inserted.values();
+
+		final long[] nanos = new long[PHASES.length];
+		final int[] timed = new int[PHASES.length];
+		final int[] inserted = new int[INSERTED.length];
+
+		void time(Phase phase, long elapsed) {
+			nanos[phase.ordinal()]+=elapsed;
+			timed[phase.ordinal()]++;
+		}
+
+		void publish(PlanMetrics metrics, int resultPoints) {
+			for (Phase p:PHASES) {
+				if (timed[p.ordinal()]>0) {
+					metrics.time(p, nanos[p.ordinal()]);
+				}
+			}
+			for (Inserted p:INSERTED) {
+				if (inserted[p.ordinal()]>0) {
+					metrics.inserted(p, inserted[p.ordinal()]);
+				}
+			}
+			metrics.resultPoints(resultPoints);
+		}
+	}
 }
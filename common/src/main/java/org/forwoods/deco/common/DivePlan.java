@@ -14,9 +14,13 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 	List<PlanPoint<STATE>> userPoints;
 	List<Gas> gases;
 	private List<PlanPoint<STATE>> resultPoints;
+	private PlanTable<STATE> resultTable;
 	STATE finalState;
 	SETTINGS algoSettings;
 	Map<Gas, Double> gasVols;
+	GasIndex gasIndex;
+	int[] checkpoints;//where planning of each planned point started in the result points
+	int firstEdit = Integer.MAX_VALUE;//first user point changed since the plan was calculated
 	
 	public void setGasVols(Map<Gas, Double> gasVols) {
 		this.gasVols = gasVols;
@@ -32,12 +36,65 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 	}
 	public void setUserPoints(List<PlanPoint<STATE>> userPoints) {
 		this.userPoints = userPoints;
+		checkpoints = null;
+	}
+
+	/**
+	 * Replace a user point of a calculated plan.
+	 * Recalculating the plan will only plan again from the point before the change.
+	 * Points must be changed through these methods rather than by setting their fields
+	 * @param index the index of the user point
+	 * @param point the new point
+	 */
+	public void setUserPoint(int index, PlanPoint<STATE> point) {
+		userPoints.set(index, point);
+		edited(index);
+	}
+
+	/**
+	 * @see #setUserPoint(int, PlanPoint)
+	 */
+	public void addUserPoint(int index, PlanPoint<STATE> point) {
+		userPoints.add(index, point);
+		edited(index);
+	}
+
+	/**
+	 * @see #setUserPoint(int, PlanPoint)
+	 */
+	public void removeUserPoint(int index) {
+		userPoints.remove(index);
+		edited(index);
+	}
+
+	private void edited(int index) {
+		firstEdit = Math.min(firstEdit, index);
+	}
+
+	/**
+	 * A copy of this plan with other settings that will be planned again from a user point
+	 * - the result points before it are shared with this plan
+	 * @param settings the settings for the copy
+	 * @param firstEdit the first user point to plan again
+	 */
+	DivePlan<SETTINGS, STATE> fork(SETTINGS settings, int firstEdit) {
+		DivePlan<SETTINGS, STATE> fork = new DivePlan<>();
+		fork.algoSettings = settings;
+		fork.userPoints = new ArrayList<>(userPoints);
+		fork.gases = gases;
+		fork.lastPlan = lastPlan;
+		fork.surfaceInterval = surfaceInterval;
+		fork.resultPoints = resultPoints;
+		fork.checkpoints = checkpoints;
+		fork.firstEdit = firstEdit;
+		return fork;
 	}
 	public List<Gas> getGases() {
 		return gases;
 	}
 	public void setGases(List<Gas> gases) {
 		this.gases = gases;
+		checkpoints = null;
 		//need to change gases for user points
 		if (userPoints!=null)
 		{
@@ -60,9 +117,20 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 	public SETTINGS getAlgoSettings() {
 		return algoSettings;
 	}
+	public void setAlgoSettings(SETTINGS algoSettings) {
+		this.algoSettings = algoSettings;
+		checkpoints = null;
+	}
 	public Map<Gas, Double> getGasVols() {
 		return gasVols;
 	}
+
+	/**
+	 * @return the gases of the plan indexed for the plan's settings - only set on calculated plans
+	 */
+	public GasIndex getGasIndex() {
+		return gasIndex;
+	}
 	
 	public STATE getFinalState() {
 		return finalState;
@@ -78,6 +146,7 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 
 	public void setSurfaceInterval(double surfaceInterval) {
 		this.surfaceInterval = surfaceInterval;
+		checkpoints = null;
 	}
 
 	public DivePlan<SETTINGS, STATE> getLastPlan() {
@@ -86,6 +155,7 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 
 	public void setLastPlan(DivePlan<SETTINGS, STATE> lastPlan) {
 		this.lastPlan = lastPlan;
+		checkpoints = null;
 	}
 
 	public void prettyPrint(OutputStream out) {
@@ -105,6 +175,52 @@ public class DivePlan<SETTINGS extends DiveSettings, STATE extends AlgoState> {
 
 	public void setResultPoints(List<PlanPoint<STATE>> resultPoints) {
 		this.resultPoints = resultPoints;
+		resultTable = null;
+		checkpoints = null;
+	}
+
+	/**
+	 * Replace the result points with a compact table for plans that are kept around.
+	 * The result points become a read-only view of the table.
+	 * @param codec codec for the states of the points - null to drop them
+	 * @return the table
+	 */
+	public PlanTable<STATE> compact(StateCodec<STATE> codec) {
+		if (resultTable==null) {
+			PlanTable<STATE> table = PlanTable.of(resultPoints, codec);
+			resultPoints = table.asList();
+			resultTable = table;
+			//the points are no longer kept so can't be resumed from
+			checkpoints = null;
+		}
+		return resultTable;
+	}
+
+	/**
+	 * Replace the result points with a compact table that only keeps the states planning resumes
+	 * from (see {@link PlanTable#of(List, StateCodec, int[])}) - a fraction of the size of
+	 * {@link #compact(StateCodec)} and the plan can still be edited and planned again from a change.
+	 * The points without a state have a null state
+	 * @param codec codec for the kept states
+	 * @return the table
+	 */
+	public PlanTable<STATE> compactForResume(StateCodec<STATE> codec) {
+		if (resultTable==null) {
+			if (checkpoints==null) {
+				throw new IllegalStateException("Only a calculated plan can be compacted for resuming");
+			}
+			PlanTable<STATE> table = PlanTable.of(resultPoints, codec, checkpoints);
+			resultPoints = table.asList();
+			resultTable = table;
+		}
+		return resultTable;
+	}
+
+	/**
+	 * @return the compact result table - null unless the plan has been compacted
+	 */
+	public PlanTable<STATE> getResultTable() {
+		return resultTable;
 	}
 
 	
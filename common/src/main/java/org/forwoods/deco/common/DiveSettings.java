@@ -4,7 +4,7 @@ package org.forwoods.deco.common;
  * @author Tom
  * Class that represents settings that apply to all dives computed by algorithms
  */
-public class DiveSettings{
+public class DiveSettings implements Cloneable {
 	
 
 	public float atmosphericPressure=10.1325f;//m seawater equivalent
@@ -24,4 +24,16 @@ public class DiveSettings{
 	public float lastStopDepth=6;
 	public float lastAscentTime=1;
 
+	/**
+	 * @return a copy of the settings - e.g. to vary one of them between plans
+	 */
+	@Override
+	public DiveSettings clone() {
+		try {
+			return (DiveSettings)super.clone();
+		}
+		catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
 }
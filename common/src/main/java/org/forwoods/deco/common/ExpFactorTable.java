@@ -0,0 +1,75 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Precomputed exp(-k*t) factors for a fixed set of compartment time constants.
+ * Stop times are whole minutes and the time constants never change so the same
+ * factors are needed again and again - the table holds them for every interval
+ * that is a whole number of steps up to a maximum.
+ *
+ * The cached factors are calculated exactly as Laws does so the batch kernels
+ * give the same results as the scalar ones. The table is immutable once built
+ * and can be shared between threads.
+ */
+public class ExpFactorTable {
+
+	private final double[] timeConstants;
+	private final double step;
+	private final double[][] factors;//[interval steps][compartment]
+
+	/**
+	 * @param timeConstants gas time constants of the compartments
+	 * @param step the interval granularity (mins)
+	 * @param maxSteps the longest interval cached, in steps
+	 */
+	public ExpFactorTable(double[] timeConstants, double step, int maxSteps) {
+		this.timeConstants = timeConstants.clone();
+		this.step = step;
+		factors = new double[maxSteps+1][];
+		for (int n=0;n<=maxSteps;n++) {
+			factors[n] = compute(n*step, new double[timeConstants.length]);
+		}
+	}
+
+	/**
+	 * @param interval the interval time (mins)
+	 * @return the cached factors for the interval or null if it is not a whole number of steps in the table
+	 * The returned array must not be modified
+	 */
+	public double[] get(double interval) {
+		double steps = Math.rint(interval/step);
+		if (steps<0 || steps>=factors.length || steps*step!=interval) {
+			return null;
+		}
+		return factors[(int)steps];
+	}
+
+	/**
+	 * @param interval the interval time (mins)
+	 * @param scratch array to calculate the factors into if they aren't cached
+	 * @return the factors for the interval - either the cached array or scratch
+	 */
+	public double[] get(double interval, double[] scratch) {
+		double[] cached = get(interval);
+		if (cached!=null) {
+			return cached;
+		}
+		return compute(interval, scratch);
+	}
+
+	private double[] compute(double interval, double[] result) {
+		for (int i=0;i<timeConstants.length;i++) {
+			result[i] = Math.exp(-timeConstants[i] * interval);
+		}
+		return result;
+	}
+
+	public double[] getTimeConstants() {
+		return timeConstants;
+	}
+
+	public int size() {
+		return timeConstants.length;
+	}
+
+}
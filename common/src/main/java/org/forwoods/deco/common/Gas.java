@@ -99,6 +99,7 @@ public class Gas implements Serializable{
 				//it is breathable - is it better (higher o2 percent)
 				if (g.getPercent(GAS.O2)>bestO2) {
 					best=g;
+					bestO2=g.getPercent(GAS.O2);
 				}
 			}
 		}
@@ -111,11 +112,17 @@ public class Gas implements Serializable{
 		return mod>depth && getMinod(settings)<depth;
 	}
 
+	/**
+	 * Hash of the O2 and He fractions.
+	 * The hash of the EnumMap depends on the identity hashes of the enum constants
+	 * so it changed from one run to the next - this is the same in every JVM
+	 */
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((percentages == null) ? 0 : percentages.hashCode());
+		result = prime * result + Float.floatToIntBits(getPercent(GAS.O2));
+		result = prime * result + Float.floatToIntBits(getPercent(GAS.HE));
 		return result;
 	}
 
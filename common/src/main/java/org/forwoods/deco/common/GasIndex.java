@@ -0,0 +1,122 @@
+package org.forwoods.deco.common;
+
+import java.util.List;
+
+/**
+ * @author Tom
+ * The gases of a plan with their MODs and min ODs worked out once for the plan's settings
+ * and a lookup table of the best gas for every depth.
+ * <p>
+ * Operating depths are whole metres and breathability is a strict comparison against them,
+ * so the best gas is the same for every depth strictly between two whole metres.
+ * The table holds the best gas at each whole metre and in the interval above it, which makes
+ * {@link #pickBest(double)} an array lookup that gives exactly the same answer as
+ * {@link Gas#pickBest(double, DiveSettings, List)}.
+ * <p>
+ * Immutable once built so it can be shared between threads.
+ */
+public class GasIndex {
+
+	private final DiveSettings settings;
+	private final Gas[] gases;
+	private final int[] mods;
+	private final int[] minods;
+	private final float[] o2;
+
+	private final Gas[] bestAt;//best gas at depth == n
+	private final Gas[] bestAbove;//best gas at n < depth < n+1
+
+	public GasIndex(List<Gas> gases, DiveSettings settings) {
+		this.settings = settings;
+		this.gases = gases.toArray(new Gas[gases.size()]);
+		int count = this.gases.length;
+		mods = new int[count];
+		minods = new int[count];
+		o2 = new float[count];
+		int maxMod = 0;
+		for (int i=0;i<count;i++) {
+			Gas g = this.gases[i];
+			mods[i] = g.getMOD(settings);
+			minods[i] = g.getMinod(settings);
+			o2[i] = g.getPercent(Gas.GAS.O2);
+			maxMod = Math.max(maxMod, mods[i]);
+		}
+		//nothing is breathable at or below the deepest MOD
+		bestAt = new Gas[maxMod+1];
+		bestAbove = new Gas[maxMod+1];
+		for (int n=0;n<=maxMod;n++) {
+			bestAt[n] = scan(n);
+			bestAbove[n] = scan(n+0.5);
+		}
+	}
+
+	/**
+	 * @param depth the depth
+	 * @return the breathable gas with the highest O2 fraction or null if there isn't one
+	 * @see Gas#pickBest(double, DiveSettings, List)
+	 */
+	public Gas pickBest(double depth) {
+		if (depth>=0 && depth<bestAt.length) {
+			int n = (int)depth;
+			return n==depth?bestAt[n]:bestAbove[n];
+		}
+		return scan(depth);
+	}
+
+	private Gas scan(double depth) {
+		Gas best=null;
+		float bestO2=0;
+		for (int i=0;i<gases.length;i++) {
+			if (mods[i]>depth && minods[i]<depth && o2[i]>bestO2) {
+				best=gases[i];
+				bestO2=o2[i];
+			}
+		}
+		return best;
+	}
+
+	public DiveSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * @return the position of the gas in the plan's gases, -1 if it isn't one of them
+	 */
+	public int ordinal(Gas gas) {
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i]==gas) return i;
+		}
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i].equals(gas)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @see Gas#getMOD(DiveSettings)
+	 */
+	public int getMOD(Gas gas) {
+		int i = ordinal(gas);
+		return i<0?gas.getMOD(settings):mods[i];
+	}
+
+	/**
+	 * @see Gas#getMinod(DiveSettings)
+	 */
+	public int getMinod(Gas gas) {
+		int i = ordinal(gas);
+		return i<0?gas.getMinod(settings):minods[i];
+	}
+
+	/**
+	 * @see Gas#isBreathable(double, DiveSettings)
+	 */
+	public boolean isBreathable(Gas gas, double depth) {
+		int i = ordinal(gas);
+		if (i<0) {
+			return gas.isBreathable(depth, settings);
+		}
+		return mods[i]>depth && minods[i]<depth;
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.forwoods.deco.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * @author Tom
+ * How sensitive the gas needed for a plan is to the diver not sticking to it.
+ * The plan is calculated many times with the SAC, descent and ascent rates and a delay at depth
+ * drawn at random (see {@link SensitivitySettings}) and the volume of each gas used by every
+ * sample is counted in a histogram - neither the samples' plans nor their volumes are kept - so
+ * percentiles of the volumes can be read off to within {@link VolumeHistogram#RESOLUTION}.
+ * <p>
+ * Samples are calculated in parallel with a histogram for each part of the work that are added
+ * together at the end. Each sample draws from its own {@link SplittableRandom} seeded up front so
+ * the results only depend on the seed and not on how the work was split.
+ */
+public class GasSensitivity {
+
+	private static final double MIN_FACTOR = 0.25;//never scale a rate or SAC by less than this
+
+	private final List<Gas> gases;
+	private final VolumeHistogram[] volumes;//the volumes of the samples for each gas
+	private final int samples;
+
+	private GasSensitivity(List<Gas> gases, VolumeHistogram[] volumes, int samples) {
+		this.gases = gases;
+		this.volumes = volumes;
+		this.samples = samples;
+	}
+
+	/**
+	 * @param algo the algorithm to plan with
+	 * @param userPlan the plan to vary - not changed
+	 * @param sensitivity how much to vary the plan
+	 * @return the volumes used by the samples
+	 */
+	public static <SETTINGS extends DiveSettings, STATE extends AlgoState> GasSensitivity analyse(
+			DecoAlgorithm<SETTINGS, STATE> algo, DivePlan<SETTINGS, STATE> userPlan, SensitivitySettings sensitivity) {
+		List<Gas> gases = new ArrayList<>(userPlan.getGases());
+		int samples = sensitivity.samples;
+		long[] seeds = new SplittableRandom(sensitivity.seed).longs(samples).toArray();
+		int deepest = deepest(userPlan.getUserPoints());
+
+		VolumeHistogram[] volumes = IntStream.range(0, samples).parallel().collect(
+				()->histograms(gases.size()),
+				(histograms, i)->{
+					SplittableRandom random = new SplittableRandom(seeds[i]);
+					DivePlan<SETTINGS, STATE> plan = algo.calculateDive(sample(userPlan, deepest, sensitivity, random));
+					for (int g=0;g<gases.size();g++) {
+						Double used = plan.getGasVols().get(gases.get(g));
+						histograms[g].add(used==null?0:used);
+					}
+				},
+				(histograms, other)->{
+					for (int g=0;g<histograms.length;g++) {
+						histograms[g].addAll(other[g]);
+					}
+				});
+		return new GasSensitivity(gases, volumes, samples);
+	}
+
+	private static VolumeHistogram[] histograms(int gases) {
+		VolumeHistogram[] histograms = new VolumeHistogram[gases];
+		for (int g=0;g<gases;g++) {
+			histograms[g] = new VolumeHistogram();
+		}
+		return histograms;
+	}
+
+	private static <SETTINGS extends DiveSettings, STATE extends AlgoState> DivePlan<SETTINGS, STATE> sample(
+			DivePlan<SETTINGS, STATE> userPlan, int deepest, SensitivitySettings sensitivity, SplittableRandom random) {
+		@SuppressWarnings("unchecked")
+		SETTINGS settings = (SETTINGS)userPlan.getAlgoSettings().clone();
+		//the same diver breathes harder or easier for the whole dive
+		double sac = factor(random, sensitivity.sacSpread);
+		settings.bottomSAC *= sac;
+		settings.decoSAC *= sac;
+		settings.descentRate *= factor(random, sensitivity.rateSpread);
+		settings.ascentRate *= factor(random, sensitivity.rateSpread);
+		double delay = random.nextDouble()*sensitivity.maxDelay;
+
+		//delay the ascent from the deepest point - later points move with it
+		List<PlanPoint<STATE>> userPoints = userPlan.getUserPoints();
+		List<PlanPoint<STATE>> points = new ArrayList<>(userPoints.size());
+		for (int i=0;i<userPoints.size();i++) {
+			PlanPoint<STATE> p = new PlanPoint<>(userPoints.get(i));
+			if (i==deepest && p.durationPoint) {
+				p.duration += delay;
+			}
+			else if (i>=deepest && !p.durationPoint) {
+				p.time += delay;
+			}
+			points.add(p);
+		}
+
+		DivePlan<SETTINGS, STATE> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		plan.setUserPoints(points);
+		plan.setGases(userPlan.getGases());
+		plan.setLastPlan(userPlan.getLastPlan());
+		plan.setSurfaceInterval(userPlan.getSurfaceInterval());
+		return plan;
+	}
+
+	/**
+	 * @return a normally distributed factor around 1
+	 */
+	private static double factor(SplittableRandom random, double spread) {
+		//Box-Muller
+		double u = 1-random.nextDouble();
+		double gaussian = Math.sqrt(-2*Math.log(u))*Math.cos(2*Math.PI*random.nextDouble());
+		return Math.max(MIN_FACTOR, 1+gaussian*spread);
+	}
+
+	private static <STATE extends AlgoState> int deepest(List<PlanPoint<STATE>> points) {
+		int deepest = 0;
+		for (int i=1;i<points.size();i++) {
+			if (points.get(i).depth>points.get(deepest).depth) {
+				deepest = i;
+			}
+		}
+		return deepest;
+	}
+
+	public List<Gas> getGases() {
+		return gases;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @param gas one of the plan's gases
+	 * @param percentile 0-100
+	 * @return the volume (litres) of the gas that was enough for that percentage of the samples
+	 */
+	public double percentile(Gas gas, double percentile) {
+		int g = gases.indexOf(gas);
+		if (g<0) {
+			throw new IllegalArgumentException("Gas "+gas+" is not one of the plan's gases");
+		}
+		return volumes[g].percentile(percentile);
+	}
+
+	public double getP50(Gas gas) {
+		return percentile(gas, 50);
+	}
+
+	public double getP95(Gas gas) {
+		return percentile(gas, 95);
+	}
+
+	public double getP99(Gas gas) {
+		return percentile(gas, 99);
+	}
+}
@@ -0,0 +1,141 @@
+package org.forwoods.deco.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * @author Tom
+ * Cumulative volume of each gas used up to a plan point.
+ * Volumes are held in a double[] indexed by the gas's ordinal in the plan, every point
+ * of a plan shares the same gas array so copying a point's volumes is a single array clone.
+ * Callers see a read-only Map of gas to volume (litres).
+ */
+public class GasVolumes extends AbstractMap<Gas, Double> {
+
+	private final Gas[] gases;
+	private final double[] vols;
+
+	/**
+	 * @param gases the gases of a plan - all starting at zero volume
+	 */
+	public GasVolumes(List<Gas> gases) {
+		List<Gas> distinct = new ArrayList<>();
+		for (Gas g:gases) {
+			if (!distinct.contains(g)) {
+				distinct.add(g);
+			}
+		}
+		this.gases = distinct.toArray(new Gas[distinct.size()]);
+		vols = new double[this.gases.length];
+	}
+
+	GasVolumes(Gas[] gases, double[] vols) {
+		this.gases = gases;
+		this.vols = vols;
+	}
+
+	/**
+	 * copy the volumes of another point
+	 */
+	public GasVolumes(GasVolumes other) {
+		gases = other.gases;
+		vols = other.vols.clone();
+	}
+
+	/**
+	 * @param gas a gas of the plan
+	 * @return the ordinal of the gas within the plan or -1 if it isn't one of the plan's gases
+	 */
+	public int ordinal(Object gas) {
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i]==gas) return i;
+		}
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i].equals(gas)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param other the volumes used at a point of another plan
+	 * @return the volumes of this plan's gases used at that point - 0 for any gas the other plan hasn't got
+	 */
+	GasVolumes copyOf(GasVolumes other) {
+		double[] copied = new double[gases.length];
+		for (int i=0;i<gases.length;i++) {
+			Double vol = other.get(gases[i]);
+			copied[i] = vol==null?0:vol;
+		}
+		return new GasVolumes(gases, copied);
+	}
+
+	Gas[] gases() {
+		return gases;
+	}
+
+	public Gas gas(int ordinal) {
+		return gases[ordinal];
+	}
+
+	public double volume(int ordinal) {
+		return vols[ordinal];
+	}
+
+	void add(Gas gas, double vol) {
+		int ordinal = ordinal(gas);
+		if (ordinal<0) {
+			throw new IllegalArgumentException("Gas "+gas+" is not one of the plan's gases");
+		}
+		vols[ordinal]+=vol;
+	}
+
+	@Override
+	public Double get(Object key) {
+		int ordinal = ordinal(key);
+		return ordinal<0?null:vols[ordinal];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return ordinal(key)>=0;
+	}
+
+	@Override
+	public int size() {
+		return gases.length;
+	}
+
+	@Override
+	public Set<Entry<Gas, Double>> entrySet() {
+		return new AbstractSet<Entry<Gas,Double>>() {
+			@Override
+			public Iterator<Entry<Gas, Double>> iterator() {
+				return new Iterator<Entry<Gas,Double>>() {
+					int next = 0;
+					@Override
+					public boolean hasNext() {
+						return next<gases.length;
+					}
+					@Override
+					public Entry<Gas, Double> next() {
+						if (next>=gases.length) throw new NoSuchElementException();
+						Entry<Gas, Double> entry = new SimpleImmutableEntry<>(gases[next], vols[next]);
+						next++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return gases.length;
+			}
+		};
+	}
+
+}
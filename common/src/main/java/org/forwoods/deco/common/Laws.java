@@ -7,6 +7,7 @@ package org.forwoods.deco.common;
  */
 public class Laws {
 	
+	private static final TissueKernels KERNELS = TissueKernels.load();
 	
 	/**
 	 * The schreiner equation calculates the ending pp of inert gas at the end of a period where the inspired
@@ -49,4 +50,119 @@ public class Laws {
 				(1d - Math.exp(-(gas_time_constant) * interval_time));
 			return (double)ret_val;
 		}
+
+	/**
+	 * The Haldane equation solved for the time - how long at constant depth until the
+	 * compartment reaches a target pressure
+	 * @param initial_gas_pressure initial pp of intert gas in the compartment
+	 * @param inspired_gas_pressure pp of intert gas in inhaled gas
+	 * @param gas_time_constant gas time constant of this compartment
+	 * @param target_gas_pressure the pp of interest
+	 * @return the time to reach the target - 0 if it is already there and
+	 * positive infinity if the compartment never gets there
+	 */
+	public static double haldaneTime(double initial_gas_pressure,
+			double inspired_gas_pressure,
+			double gas_time_constant,
+			double target_gas_pressure) {
+		double toTarget = target_gas_pressure-initial_gas_pressure;
+		double toInspired = inspired_gas_pressure-initial_gas_pressure;
+		if (toTarget==0) {
+			return 0;
+		}
+		//the pressure only moves towards the inspired pressure and never quite gets there
+		if (toTarget*toInspired<=0 || Math.abs(toTarget)>=Math.abs(toInspired)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return -Math.log1p(-toTarget/toInspired)/gas_time_constant;
+	}
+
+	/**
+	 * Batch form of {@link #schreiner(double, double, double, double, double)} for every compartment.
+	 * Gives the same results as calling the scalar version for each compartment
+	 * @param initInspGasPres The inspired PP of the gas at the start of the movement
+	 * @param gasChangeRate The rate at which the PP changes during the period
+	 * @param segTime the time length of the period
+	 * @param gasTimeConstants the gas constants of the compartments
+	 * @param factors exp(-k*segTime) for each compartment - see {@link ExpFactorTable}
+	 * @param initGasPres the initial pp of gas in each compartment
+	 * @param result the ending pp of gas in each compartment - may be the same array as initGasPres
+	 */
+	public static void schreiner(double initInspGasPres, double gasChangeRate, double segTime,
+			double[] gasTimeConstants, double[] factors, double[] initGasPres, double[] result)
+	{
+		for (int i=0;i<result.length;i++) {
+			double k = gasTimeConstants[i];
+			result[i]=initInspGasPres+gasChangeRate*(segTime - 1/k) -
+				(initInspGasPres - initGasPres[i] - gasChangeRate/k) *
+				factors[i];
+		}
+	}
+
+	/**
+	 * Batch form of {@link #haldane(double, double, double, double)} for every compartment.
+	 * With the factors precomputed each compartment is a single multiply-add
+	 * @param initial_gas_pressure initial pp of intert gas in each compartment
+	 * @param inspired_gas_pressure pp of intert gas in inhaled gas
+	 * @param factors exp(-k*interval_time) for each compartment - see {@link ExpFactorTable}
+	 * @param result the end pp of gas in each compartment - may be the same array as initial_gas_pressure
+	 */
+	public static void haldane(double[] initial_gas_pressure,
+			double inspired_gas_pressure,
+			double[] factors,
+			double[] result){
+		for (int i=0;i<result.length;i++) {
+			result[i] = initial_gas_pressure[i] +
+				(inspired_gas_pressure - initial_gas_pressure[i]) *
+				(1d - factors[i]);
+		}
+	}
+
+	/**
+	 * Haldane equation for every compartment of both inert gases in one call.
+	 * Uses the Vector API when it is available and gives the same results as the scalar kernels
+	 * @param n2 initial pp of nitrogen in each compartment
+	 * @param he initial pp of helium in each compartment
+	 * @param n2Insp pp of nitrogen in the inhaled gas
+	 * @param heInsp pp of helium in the inhaled gas
+	 * @param n2Factors nitrogen exp(-k*interval_time) for each compartment
+	 * @param heFactors helium exp(-k*interval_time) for each compartment
+	 * @param n2Result end pp of nitrogen - may be the same array as n2
+	 * @param heResult end pp of helium - may be the same array as he
+	 */
+	public static void haldane(double[] n2, double[] he, double n2Insp, double heInsp,
+			double[] n2Factors, double[] heFactors, double[] n2Result, double[] heResult) {
+		KERNELS.haldane(n2, he, n2Insp, heInsp, n2Factors, heFactors, n2Result, heResult);
+	}
+
+	/**
+	 * Schreiner equation for every compartment of both inert gases in one call.
+	 * Uses the Vector API when it is available and gives the same results as the scalar kernels
+	 * @param n2Insp inspired pp of nitrogen at the start of the movement
+	 * @param n2Rate rate of change of the inspired nitrogen pp
+	 * @param heInsp inspired pp of helium at the start of the movement
+	 * @param heRate rate of change of the inspired helium pp
+	 * @param segTime the time length of the period
+	 * @param n2TimeConstants nitrogen time constants of the compartments
+	 * @param heTimeConstants helium time constants of the compartments
+	 * @param n2Factors nitrogen exp(-k*segTime) for each compartment
+	 * @param heFactors helium exp(-k*segTime) for each compartment
+	 * @param n2 initial pp of nitrogen in each compartment
+	 * @param he initial pp of helium in each compartment
+	 * @param n2Result end pp of nitrogen - may be the same array as n2
+	 * @param heResult end pp of helium - may be the same array as he
+	 */
+	public static void schreiner(double n2Insp, double n2Rate, double heInsp, double heRate, double segTime,
+			double[] n2TimeConstants, double[] heTimeConstants, double[] n2Factors, double[] heFactors,
+			double[] n2, double[] he, double[] n2Result, double[] heResult) {
+		KERNELS.schreiner(n2Insp, n2Rate, heInsp, heRate, segTime, n2TimeConstants, heTimeConstants,
+				n2Factors, heFactors, n2, he, n2Result, heResult);
+	}
+
+	/**
+	 * @return whether the batch kernels are using the Vector API
+	 */
+	public static boolean isVectorised() {
+		return !(KERNELS instanceof ScalarTissueKernels);
+	}
 }
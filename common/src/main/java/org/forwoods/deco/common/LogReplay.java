@@ -0,0 +1,219 @@
+package org.forwoods.deco.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Tom
+ * Replays a logged dive through an algorithm's tissue model one sample at a time.
+ * <p>
+ * Dive computer logs have a sample every second or so - tens of thousands per dive - so instead of
+ * making a plan point for each sample the replay only keeps two states that it swaps between and
+ * running totals (gas used, oxygen exposure, deepest ceiling). Memory doesn't grow with the log.
+ * When the log is finished {@link #toLastPlan()} gives a plan that can be the last plan of
+ * a repetitive dive.
+ * <p>
+ * Not thread safe.
+ *
+ * @param <SETTINGS> Type parameter for the settings of the algorithm
+ * @param <STATE> Type parameter for the saturation state tracked by the algorithm
+ */
+public class LogReplay<SETTINGS extends DiveSettings, STATE extends AlgoState> {
+
+	private final DecoAlgorithm<SETTINGS, STATE> algo;
+	private final SETTINGS settings;
+	private final List<Gas> gases;
+	private final GasIndex gasIndex;
+
+	private STATE state;
+	private STATE next;
+	private Gas gas;
+	private int gasOrdinal;
+	private double o2;
+
+	private double time;
+	private double depth;
+	private int samples;
+	private final double[] gasUsed;
+	private double otu;
+	private double cns;
+	private double maxDepth;
+	private double maxCeiling;
+	private double maxCeilingTime;
+
+	/**
+	 * @param algo the algorithm to replay with
+	 * @param settings the settings - the SACs are used for the gas used
+	 * @param gases the gases breathed on the dive
+	 * @param gas the gas breathed at the start
+	 */
+	public LogReplay(DecoAlgorithm<SETTINGS, STATE> algo, SETTINGS settings, List<Gas> gases, Gas gas) {
+		this(algo, settings, gases, gas, null, 0);
+	}
+
+	/**
+	 * Replay a repetitive dive
+	 * @param lastPlan the dive before this one - may be another replay's {@link #toLastPlan()}
+	 * @param surfaceInterval the time (mins) at the surface since the last dive
+	 */
+	public LogReplay(DecoAlgorithm<SETTINGS, STATE> algo, SETTINGS settings, List<Gas> gases, Gas gas,
+			DivePlan<SETTINGS, STATE> lastPlan, double surfaceInterval) {
+		this.algo = algo;
+		this.settings = settings;
+		this.gases = new ArrayList<>(gases);
+		gasIndex = new GasIndex(this.gases, settings);
+		gasUsed = new double[this.gases.size()];
+
+		PlanPoint<STATE> start = new PlanPoint<>(0, 0);
+		if (lastPlan==null) {
+			algo.initialise(settings, start);
+		}
+		else {
+			DivePlan<SETTINGS, STATE> last = algo.calculated(lastPlan);
+			algo.surfaceInterval(settings, last.getFinalState(), surfaceInterval, start);
+			algo.initOxygen(last, surfaceInterval, start);
+		}
+		state = start.algoState;
+		next = newState();
+		otu = start.OTU;
+		cns = start.CNS;
+		setGas(gas);
+	}
+
+	private STATE newState() {
+		PlanPoint<STATE> scratch = new PlanPoint<>(0, 0);
+		algo.initialise(settings, scratch);
+		return scratch.algoState;
+	}
+
+	/**
+	 * The diver switched gas at the time of the last sample
+	 * @param gas one of the gases of the dive
+	 */
+	public void setGas(Gas gas) {
+		int ordinal = gasIndex.ordinal(gas);
+		if (ordinal<0) {
+			throw new IllegalArgumentException("Gas "+gas+" is not one of the dive's gases");
+		}
+		this.gas = gas;
+		gasOrdinal = ordinal;
+		o2 = gas.getPercent(Gas.GAS.O2);
+	}
+
+	/**
+	 * Advance to the next sample. The depth is taken to change at a constant rate since the last sample.
+	 * The dive starts at the surface at time 0
+	 * @param sampleTime the time (mins) of the sample
+	 * @param sampleDepth the depth (m) of the sample
+	 */
+	public void sample(double sampleTime, double sampleDepth) {
+		double interval = sampleTime-time;
+		if (interval<0) {
+			throw new IllegalArgumentException("Sample at "+sampleTime+" is before the last sample at "+time);
+		}
+		algo.loggedSegment(settings, state, next, gas, depth, sampleDepth, interval);
+		STATE swap = state;
+		state = next;
+		next = swap;
+
+		double sac = state.isDeco()?settings.decoSAC:settings.bottomSAC;
+		gasUsed[gasOrdinal] += DecoAlgorithm.breathed(depth, sampleDepth, interval, sac, settings.atmosphericPressure);
+		double startPP = DecoAlgorithm.metersToBar(depth, settings.atmosphericPressure)*o2;
+		double endPP = DecoAlgorithm.metersToBar(sampleDepth, settings.atmosphericPressure)*o2;
+		otu += OxygenToxicity.otu(startPP, endPP, interval);
+		cns += OxygenToxicity.cns(startPP, endPP, interval);
+
+		time = sampleTime;
+		depth = sampleDepth;
+		samples++;
+		if (depth>maxDepth) {
+			maxDepth = depth;
+		}
+		double ceiling = algo.ceiling(settings, state);
+		if (ceiling>maxCeiling) {
+			maxCeiling = ceiling;
+			maxCeilingTime = time;
+		}
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	public double getTime() {
+		return time;
+	}
+
+	public double getDepth() {
+		return depth;
+	}
+
+	public double getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return the deepest ceiling (m) of the dive so far - 0 if there never was one
+	 */
+	public double getMaxCeiling() {
+		return maxCeiling;
+	}
+
+	/**
+	 * @return the time (mins) of the deepest ceiling
+	 */
+	public double getMaxCeilingTime() {
+		return maxCeilingTime;
+	}
+
+	/**
+	 * @return the state at the last sample - changed by the next sample
+	 */
+	public STATE getState() {
+		return state;
+	}
+
+	public double getOTU() {
+		return otu;
+	}
+
+	public double getCNS() {
+		return cns;
+	}
+
+	/**
+	 * @return the volume (litres) of each gas breathed so far
+	 */
+	public Map<Gas, Double> getGasUsed() {
+		Map<Gas, Double> used = new LinkedHashMap<>();
+		for (int i=0;i<gasUsed.length;i++) {
+			used.put(gases.get(i), gasUsed[i]);
+		}
+		return used;
+	}
+
+	/**
+	 * @return a calculated plan holding the dive so far as a single point at the last sample -
+	 * enough to be the last plan of a repetitive dive
+	 */
+	public DivePlan<SETTINGS, STATE> toLastPlan() {
+		STATE end = newState();
+		algo.loggedSegment(settings, state, end, gas, depth, depth, 0);
+		PlanPoint<STATE> point = new PlanPoint<>(depth, time, gas, false, false, false);
+		point.algoState = end;
+		point.OTU = otu;
+		point.CNS = cns;
+		point.gasUsed = new GasVolumes(gases.toArray(new Gas[gases.size()]), gasUsed.clone());
+
+		DivePlan<SETTINGS, STATE> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		plan.setGases(new ArrayList<>(gases));
+		plan.setResultPoints(new ArrayList<>(Arrays.asList(point)));
+		plan.setGasVols(point.gasUsed);
+		plan.finalState = end;
+		return plan;
+	}
+}
@@ -0,0 +1,106 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Oxygen exposure of a segment - CNS% from the NOAA oxygen limits and OTUs (oxygen tolerance units).
+ * <p>
+ * Both are a rate that depends on the ppO2 so a segment where the ppO2 changes at a constant rate
+ * (a descent or ascent) is the integral of the rate over the ppO2 range divided by that range.
+ * The rates and their integrals are tabulated at every hundredth of a bar when the class is loaded
+ * so working out a segment is a couple of array lookups - nothing is allocated.
+ */
+public class OxygenToxicity {
+
+	//NOAA single exposure limits (mins) from 0.6 to 1.6 bar in tenths
+	private static final double[] NOAA_LIMITS = {720, 570, 450, 360, 300, 240, 210, 180, 150, 120, 45};
+	private static final double NOAA_MIN = 0.6;
+	private static final double CNS_THRESHOLD = 0.5;//no CNS loading at or below this ppO2
+	private static final double OTU_THRESHOLD = 0.5;
+
+	static final double STEP = 0.01;//bar
+	static final double MAX_PP = 3;//bar - ppO2s above this are treated as this
+
+	private static final int SIZE = (int)Math.round(MAX_PP/STEP)+1;
+	private static final double[] CNS_RATE = new double[SIZE];//%/min at each step
+	private static final double[] CNS_INTEGRAL = new double[SIZE];//integral of the rate from 0 bar
+	private static final double[] OTU_RATE = new double[SIZE];//OTU/min at each step
+	private static final double[] OTU_INTEGRAL = new double[SIZE];
+
+	static {
+		for (int i=0;i<SIZE;i++) {
+			double pp = i*STEP;
+			CNS_RATE[i] = pp<=CNS_THRESHOLD?0:100/noaaLimit(pp);
+			OTU_RATE[i] = pp<=OTU_THRESHOLD?0:Math.pow((pp-OTU_THRESHOLD)/OTU_THRESHOLD, 5d/6);
+			if (i>0) {
+				CNS_INTEGRAL[i] = CNS_INTEGRAL[i-1]+(CNS_RATE[i-1]+CNS_RATE[i])/2*STEP;
+				//the OTU rate integrates exactly
+				OTU_INTEGRAL[i] = pp<=OTU_THRESHOLD?0:
+					OTU_THRESHOLD*6/11*Math.pow((pp-OTU_THRESHOLD)/OTU_THRESHOLD, 11d/6);
+			}
+		}
+	}
+
+	/**
+	 * The NOAA limit interpolated between the table entries.
+	 * Between 0.5 and 0.6 bar the 0.6 bar limit is used and above 1.6 bar the 1.6 bar limit
+	 * - plans shouldn't go there as 1.6 is the highest ppO2 allowed for any gas
+	 */
+	private static double noaaLimit(double pp) {
+		double index = (pp-NOAA_MIN)*10;
+		if (index<=0) return NOAA_LIMITS[0];
+		if (index>=NOAA_LIMITS.length-1) return NOAA_LIMITS[NOAA_LIMITS.length-1];
+		int i = (int)index;
+		double frac = index-i;
+		return NOAA_LIMITS[i]+(NOAA_LIMITS[i+1]-NOAA_LIMITS[i])*frac;
+	}
+
+	/**
+	 * @param startPP ppO2 (bar) at the start of the segment
+	 * @param endPP ppO2 (bar) at the end of the segment
+	 * @param time length of the segment (mins)
+	 * @return the CNS% of the segment
+	 */
+	public static double cns(double startPP, double endPP, double time) {
+		return segment(CNS_RATE, CNS_INTEGRAL, startPP, endPP, time);
+	}
+
+	/**
+	 * @param startPP ppO2 (bar) at the start of the segment
+	 * @param endPP ppO2 (bar) at the end of the segment
+	 * @param time length of the segment (mins)
+	 * @return the OTUs of the segment
+	 */
+	public static double otu(double startPP, double endPP, double time) {
+		return segment(OTU_RATE, OTU_INTEGRAL, startPP, endPP, time);
+	}
+
+	private static double segment(double[] rate, double[] integral, double startPP, double endPP, double time) {
+		if (time<=0) {
+			return 0;
+		}
+		double start = clamp(startPP);
+		double end = clamp(endPP);
+		if (Math.abs(end-start)<STEP/100) {
+			//constant depth
+			return time*lookup(rate, (start+end)/2);
+		}
+		return time*(lookup(integral, end)-lookup(integral, start))/(end-start);
+	}
+
+	private static double clamp(double pp) {
+		return Math.max(0, Math.min(MAX_PP, pp));
+	}
+
+	private static double lookup(double[] table, double pp) {
+		double index = pp/STEP;
+		int i = (int)index;
+		if (i>=SIZE-1) {
+			return table[SIZE-1];
+		}
+		double frac = index-i;
+		return table[i]+(table[i+1]-table[i])*frac;
+	}
+
+	private OxygenToxicity() {
+	}
+}
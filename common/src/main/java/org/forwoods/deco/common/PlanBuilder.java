@@ -0,0 +1,125 @@
+package org.forwoods.deco.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Tom
+ * Builds the result points of a plan strictly in order.
+ * <p>
+ * Completed points (time, gas, state and gas used all calculated) are appended with
+ * {@link #emit(PlanPoint)} and are never moved or changed afterwards.
+ * Points that still need planning - e.g. a gas switch or a stop inserted in front of a
+ * user point - are queued with {@link #push(PlanPoint)} and will be handed back by
+ * {@link #next()} before anything queued earlier, so building a plan is linear in the
+ * number of points rather than shifting the tail of the list on every insert.
+ * <p>
+ * The builder records where each planned point started in the result points.
+ * Everything before that checkpoint only depends on the earlier planned points
+ * so a plan can be resumed from it when a later point is changed.
+ *
+ * @param <STATE> Type parameter for the saturation state tracked by the algorithm
+ */
+public class PlanBuilder<STATE extends AlgoState> {
+
+	private final List<PlanPoint<STATE>> points;
+	private final ArrayDeque<PlanPoint<STATE>> pending = new ArrayDeque<>();
+	private final List<PlanPoint<STATE>> planned;
+	private final int[] starts;//index in points where planning of each planned point started
+	private int nextPlanned;
+
+	/**
+	 * @param planned the points to plan - the first must already be complete
+	 */
+	PlanBuilder(List<PlanPoint<STATE>> planned) {
+		this.planned = planned;
+		points = new ArrayList<>(planned.size()*4);
+		points.add(planned.get(0));
+		starts = new int[planned.size()];
+		nextPlanned = 1;
+	}
+
+	/**
+	 * Resume an earlier plan
+	 * @param planned the points to plan
+	 * @param previous the result points of the earlier plan
+	 * @param previousStarts the checkpoints of the earlier plan
+	 * @param resumeAt the first planned point that has changed since the earlier plan
+	 */
+	PlanBuilder(List<PlanPoint<STATE>> planned, List<PlanPoint<STATE>> previous, int[] previousStarts, int resumeAt) {
+		this.planned = planned;
+		int prefix = previousStarts[resumeAt];
+		points = new ArrayList<>(prefix+(planned.size()-resumeAt)*4);
+		points.addAll(previous.subList(0, prefix));
+		starts = new int[planned.size()];
+		System.arraycopy(previousStarts, 0, starts, 0, resumeAt);
+		nextPlanned = resumeAt;
+	}
+
+	/**
+	 * Resume an earlier plan part way through planning one of its planned points
+	 * @param planned the points to plan
+	 * @param previous the result points of the earlier plan
+	 * @param previousStarts the checkpoints of the earlier plan
+	 * @param resumeAt the planned point that was being planned
+	 * @param prefix the number of result points of the earlier plan to keep
+	 */
+	PlanBuilder(List<PlanPoint<STATE>> planned, List<PlanPoint<STATE>> previous, int[] previousStarts, int resumeAt, int prefix) {
+		this.planned = planned;
+		points = new ArrayList<>(prefix+(planned.size()-resumeAt)*4);
+		points.addAll(previous.subList(0, prefix));
+		starts = new int[planned.size()];
+		//the resumed point keeps its checkpoint as the kept points planned for it depend on it
+		System.arraycopy(previousStarts, 0, starts, 0, resumeAt+1);
+		nextPlanned = resumeAt+1;
+		pending.push(planned.get(resumeAt));
+	}
+
+	/**
+	 * Append a completed point to the plan
+	 * @param point the point
+	 */
+	public void emit(PlanPoint<STATE> point) {
+		points.add(point);
+	}
+
+	/**
+	 * Queue a point that still has to be planned.
+	 * It will be the next point planned - so to queue several points push them in reverse order
+	 * @param point the point
+	 */
+	public void push(PlanPoint<STATE> point) {
+		pending.push(point);
+	}
+
+	/**
+	 * @return the last completed point
+	 */
+	public PlanPoint<STATE> last() {
+		return points.get(points.size()-1);
+	}
+
+	boolean hasNext() {
+		return !pending.isEmpty() || nextPlanned<planned.size();
+	}
+
+	PlanPoint<STATE> next() {
+		if (!pending.isEmpty()) {
+			return pending.pop();
+		}
+		starts[nextPlanned] = points.size();
+		return planned.get(nextPlanned++);
+	}
+
+	int[] getStarts() {
+		return starts;
+	}
+
+	/**
+	 * @return the completed points so far
+	 */
+	public List<PlanPoint<STATE>> getPoints() {
+		return points;
+	}
+}
@@ -0,0 +1,71 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Receives timings and counts from planning.
+ * Each plan adds up its own timings and counts and hands them over once when it is finished,
+ * on whichever thread planned it, so implementations must be thread safe and shouldn't allocate.
+ * Nothing is timed for metrics that aren't {@link #enabled()}.
+ */
+public interface PlanMetrics {
+
+	enum Phase {
+		CALCULATE,//the whole of calculateDive
+		PLAN,//planning the points
+		DESCENDING,
+		FLAT,
+		ASCENDING,
+		TRACK_GAS,
+		PICK_GAS
+	}
+
+	enum Inserted {
+		SWITCH,//gas switch
+		DESCENT,//arrival at depth on the way down
+		ARRIVAL,//arrival at a shallower depth without a stop
+		STOP//the end of a deco stop
+	}
+
+	/**
+	 * @param phase the phase - only given for phases the plan went through
+	 * @param nanos the total time the plan spent in the phase
+	 */
+	void time(Phase phase, long nanos);
+
+	/**
+	 * @param point the kind of point - only given for kinds the plan added
+	 * @param count how many of them were added to the plan
+	 */
+	void inserted(Inserted point, int count);
+
+	/**
+	 * @param count the number of result points of a calculated plan
+	 */
+	void resultPoints(int count);
+
+	/**
+	 * @return whether planning should be timed and counted at all
+	 */
+	default boolean enabled() {
+		return true;
+	}
+
+	PlanMetrics NONE = new PlanMetrics() {
+		@Override
+		public void time(Phase phase, long nanos) {
+		}
+
+		@Override
+		public void inserted(Inserted point, int count) {
+		}
+
+		@Override
+		public void resultPoints(int count) {
+		}
+
+		@Override
+		public boolean enabled() {
+			return false;
+		}
+	};
+}
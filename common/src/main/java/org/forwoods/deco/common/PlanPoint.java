@@ -1,7 +1,5 @@
 package org.forwoods.deco.common;
 
-import java.util.Map;
-
 public class PlanPoint<STATE extends AlgoState> {
 	
 	public double depth;//in metres
@@ -26,7 +24,7 @@ public class PlanPoint<STATE extends AlgoState> {
 
 	public double OTU;
 	public double CNS;
-	public Map<Gas, Double> gasUsed;
+	public GasVolumes gasUsed;//cumulative volumes of each gas
 	
 	
 	/**The user will create plan points using the first two constructors*/
@@ -68,6 +66,22 @@ public class PlanPoint<STATE extends AlgoState> {
 		
 	}
 	
+	/**
+	 * Copy the values of a point that are set before planning
+	 * so that planning never changes the points of the user's plan
+	 */
+	PlanPoint(PlanPoint<STATE> other)
+	{
+		depth=other.depth;
+		time=other.time;
+		duration=other.duration;
+		gas=other.gas;
+		durationPoint=other.durationPoint;
+		userPoint=other.userPoint;
+		movePoint=other.movePoint;
+		special=other.special;
+	}
+	
 	public String toString()
 	{
 		return depth+"-"+time+"("+gas+")";
@@ -0,0 +1,333 @@
+package org.forwoods.deco.common;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * @author Tom
+ * The result points of a calculated plan held column by column.
+ * Depth, time and the other numbers of every point are in parallel double arrays,
+ * the gas is a byte index into the plan's gases and the booleans are packed into a byte of flags.
+ * The gas volumes of every point are held in one array and, if a {@link StateCodec} is given,
+ * so are the saturation states - without a codec states are dropped.
+ * States are 34 doubles a point for Bühlmann so a table can instead keep only the states planning
+ * resumes from - see {@link #of(List, StateCodec, int[])}.
+ * <p>
+ * A retained plan is then a handful of arrays instead of several objects per point.
+ * {@link #asList()} gives a read-only list of plan points created from the rows on demand
+ * for code that still wants to work with points.
+ * <p>
+ * Immutable once built so it can be shared between threads.
+ *
+ * @param <STATE> Type parameter for the saturation state tracked by the algorithm
+ */
+public class PlanTable<STATE extends AlgoState> {
+
+	static final byte DURATION = 1;
+	static final byte USER = 2;
+	static final byte MOVE = 4;
+	static final byte SPECIAL = 8;
+	static final byte GAS_USED = 16;
+	static final byte DECO = 32;
+
+	private final int size;
+	private final double[] depth;
+	private final double[] time;
+	private final double[] duration;
+	private final double[] otu;
+	private final double[] cns;
+	private final byte[] gas;//index into gases, -1 for no gas
+	private final byte[] flags;
+
+	private final Gas[] gases;
+	private final double[] gasUsed;//size*gases.length
+
+	private final StateCodec<STATE> codec;
+	private final int[] stateRows;//the rows that have a state in increasing order - null for every row
+	private final double[] states;//rows with a state*codec.width()
+
+	private PlanTable(int size, Gas[] gases, StateCodec<STATE> codec, int[] stateRows) {
+		this.size = size;
+		this.gases = gases;
+		this.codec = codec;
+		this.stateRows = stateRows;
+		depth = new double[size];
+		time = new double[size];
+		duration = new double[size];
+		otu = new double[size];
+		cns = new double[size];
+		gas = new byte[size];
+		flags = new byte[size];
+		gasUsed = new double[size*gases.length];
+		states = codec==null?null:new double[(stateRows==null?size:stateRows.length)*codec.width()];
+	}
+
+	/**
+	 * @param points the result points of a plan
+	 * @param codec the codec for the states of the points - null to drop the states
+	 * @return a table holding the points
+	 */
+	public static <STATE extends AlgoState> PlanTable<STATE> of(List<PlanPoint<STATE>> points, StateCodec<STATE> codec) {
+		return build(points, codec, null);
+	}
+
+	/**
+	 * A table keeping only the states planning is resumed from - the state of the last point before
+	 * each checkpoint and the final state. The other rows have no state.
+	 * @param points the result points of a calculated plan
+	 * @param codec the codec for the states of the points
+	 * @param checkpoints where planning of each planned point started in the points
+	 * @return a table holding the points
+	 */
+	public static <STATE extends AlgoState> PlanTable<STATE> of(List<PlanPoint<STATE>> points, StateCodec<STATE> codec,
+			int[] checkpoints) {
+		int[] rows = new int[checkpoints.length+1];
+		int count = 0;
+		for (int start:checkpoints) {
+			if (start>0) {
+				rows[count++] = start-1;
+			}
+		}
+		rows[count++] = points.size()-1;
+		rows = Arrays.stream(rows, 0, count).sorted().distinct().toArray();
+		return build(points, codec, rows);
+	}
+
+	private static <STATE extends AlgoState> PlanTable<STATE> build(List<PlanPoint<STATE>> points, StateCodec<STATE> codec,
+			int[] stateRows) {
+		Gas[] gases = gasesOf(points);
+		if (gases.length>Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many gases for a plan table "+gases.length);
+		}
+		PlanTable<STATE> table = new PlanTable<>(points.size(), gases, codec, stateRows);
+		int row=0;
+		for (PlanPoint<STATE> p:points) {
+			table.set(row++, p);
+		}
+		return table;
+	}
+
+	private static <STATE extends AlgoState> Gas[] gasesOf(List<PlanPoint<STATE>> points) {
+		//all the points of a calculated plan share their gas volumes' gases
+		for (PlanPoint<STATE> p:points) {
+			if (p.gasUsed!=null) {
+				return p.gasUsed.gases();
+			}
+		}
+		List<Gas> distinct = new ArrayList<>();
+		for (PlanPoint<STATE> p:points) {
+			if (p.gas!=null && !distinct.contains(p.gas)) {
+				distinct.add(p.gas);
+			}
+		}
+		return distinct.toArray(new Gas[distinct.size()]);
+	}
+
+	private void set(int row, PlanPoint<STATE> p) {
+		depth[row] = p.depth;
+		time[row] = p.time;
+		duration[row] = p.duration;
+		otu[row] = p.OTU;
+		cns[row] = p.CNS;
+		gas[row] = (byte)ordinal(p.gas);
+		byte f = 0;
+		if (p.durationPoint) f|=DURATION;
+		if (p.userPoint) f|=USER;
+		if (p.movePoint) f|=MOVE;
+		if (p.special) f|=SPECIAL;
+		if (p.algoState!=null && p.algoState.isDeco()) f|=DECO;
+		if (p.gasUsed!=null) {
+			f|=GAS_USED;
+			int base = row*gases.length;
+			for (int i=0;i<gases.length;i++) {
+				gasUsed[base+i] = p.gasUsed.get(gases[i]);
+			}
+		}
+		flags[row] = f;
+		int index = stateIndex(row);
+		if (index>=0 && p.algoState!=null) {
+			codec.encode(p.algoState, states, index*codec.width());
+		}
+	}
+
+	/**
+	 * @return where the state of the row is in the states - -1 if the row has no state
+	 */
+	private int stateIndex(int row) {
+		if (codec==null) return -1;
+		if (stateRows==null) return row;
+		int index = Arrays.binarySearch(stateRows, row);
+		return index<0?-1:index;
+	}
+
+	private int ordinal(Gas g) {
+		if (g==null) return -1;
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i]==g) return i;
+		}
+		for (int i=0;i<gases.length;i++) {
+			if (gases[i].equals(g)) return i;
+		}
+		throw new IllegalArgumentException("Gas "+g+" is not one of the plan's gases");
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getDepth(int row) {
+		return depth[row];
+	}
+
+	public double getTime(int row) {
+		return time[row];
+	}
+
+	public double getDuration(int row) {
+		return duration[row];
+	}
+
+	public double getOTU(int row) {
+		return otu[row];
+	}
+
+	public double getCNS(int row) {
+		return cns[row];
+	}
+
+	public Gas getGas(int row) {
+		int g = gas[row];
+		return g<0?null:gases[g];
+	}
+
+	/**
+	 * @return the ordinal of the gas of the row in {@link #getGases()} - -1 for no gas
+	 */
+	public int getGasOrdinal(int row) {
+		return gas[row];
+	}
+
+	public boolean isDurationPoint(int row) {
+		return (flags[row]&DURATION)!=0;
+	}
+
+	public boolean isUserPoint(int row) {
+		return (flags[row]&USER)!=0;
+	}
+
+	public boolean isMovePoint(int row) {
+		return (flags[row]&MOVE)!=0;
+	}
+
+	/**
+	 * @return whether the state of the point was in deco - kept even if states are not
+	 */
+	public boolean isDeco(int row) {
+		return (flags[row]&DECO)!=0;
+	}
+
+	/**
+	 * @return the gases of the plan - the ordinals used by {@link #getGasUsed(int, int)}
+	 */
+	public List<Gas> getGases() {
+		return Arrays.asList(gases.clone());
+	}
+
+	/**
+	 * @param row the row
+	 * @param ordinal the ordinal of the gas in {@link #getGases()}
+	 * @return the volume (litres) of the gas used up to the point
+	 */
+	public double getGasUsed(int row, int ordinal) {
+		return gasUsed[row*gases.length+ordinal];
+	}
+
+	/**
+	 * @return whether states were kept for every point
+	 */
+	public boolean hasStates() {
+		return codec!=null && stateRows==null;
+	}
+
+	/**
+	 * @return whether the state of the point was kept
+	 */
+	public boolean hasState(int row) {
+		return stateIndex(row)>=0;
+	}
+
+	/**
+	 * Copy the packed state of a point without decoding it
+	 * @param row the row
+	 * @param dest array to copy to - needs the codec's width from offset
+	 * @param offset where to copy to
+	 */
+	public void copyState(int row, double[] dest, int offset) {
+		int index = stateIndex(row);
+		if (index<0) {
+			throw new IllegalStateException("The state of row "+row+" was not kept");
+		}
+		int width = codec.width();
+		System.arraycopy(states, index*width, dest, offset, width);
+	}
+
+	/**
+	 * @return the number of doubles in a packed state - 0 if states were not kept
+	 */
+	public int getStateWidth() {
+		return codec==null?0:codec.width();
+	}
+
+	/**
+	 * @return a new copy of the state of the point or null if its state was not kept
+	 */
+	public STATE getState(int row) {
+		int index = stateIndex(row);
+		if (index<0) return null;
+		return codec.decode(states, index*codec.width());
+	}
+
+	/**
+	 * @return a new plan point holding the values of the row
+	 */
+	public PlanPoint<STATE> getPoint(int row) {
+		boolean durationPoint = isDurationPoint(row);
+		PlanPoint<STATE> p = new PlanPoint<>(depth[row], durationPoint?duration[row]:time[row],
+				getGas(row), isUserPoint(row), durationPoint, isMovePoint(row));
+		p.time = time[row];
+		p.duration = duration[row];
+		p.OTU = otu[row];
+		p.CNS = cns[row];
+		p.special = (flags[row]&SPECIAL)!=0;
+		if ((flags[row]&GAS_USED)!=0) {
+			p.gasUsed = new GasVolumes(gases, Arrays.copyOfRange(gasUsed, row*gases.length, (row+1)*gases.length));
+		}
+		p.algoState = getState(row);
+		return p;
+	}
+
+	/**
+	 * @return a read-only view of the table as plan points - each get creates a new point
+	 */
+	public List<PlanPoint<STATE>> asList() {
+		return new PointList();
+	}
+
+	private class PointList extends AbstractList<PlanPoint<STATE>> implements RandomAccess {
+		@Override
+		public PlanPoint<STATE> get(int index) {
+			if (index<0 || index>=size) {
+				throw new IndexOutOfBoundsException("Row "+index+" of "+size);
+			}
+			return getPoint(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package org.forwoods.deco.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Tom
+ * Thins out dense user points before planning - e.g. a profile imported from a log with
+ * hundreds of points that nearly lie on straight lines. Each user point costs a step of planning
+ * so dropping the ones that hardly change the profile makes planning cheaper.
+ * <p>
+ * Points are dropped Douglas-Peucker style - a point is only kept if leaving it out would move the
+ * profile by more than the tolerance (m of depth at the time the point is reached).
+ * The profile is the one the planner flies, not straight lines between the points - a descent goes
+ * down at the descent rate and then holds the new depth, so a slow descent keeps its points.
+ * Duration points, gas switches, the deepest point and the turns between going down and coming up
+ * are always kept.
+ * <p>
+ * Only the simplified profile is planned. The original's points are replayed through the algorithm's
+ * tissue model (see {@link LogReplay}) along the profile the planner would fly - without any stops -
+ * and compared with the planned states up to the last user point to report the largest difference
+ * in tissue loading the simplification introduced.
+ */
+public class ProfileSimplifier {
+
+	/**
+	 * The result of simplifying a plan's user points
+	 */
+	public static class Simplification<SETTINGS extends DiveSettings, STATE extends AlgoState> {
+		private final DivePlan<SETTINGS, STATE> plan;
+		private final int removed;
+		private final double maxLoadingError;
+
+		Simplification(DivePlan<SETTINGS, STATE> plan, int removed, double maxLoadingError) {
+			this.plan = plan;
+			this.removed = removed;
+			this.maxLoadingError = maxLoadingError;
+		}
+
+		/**
+		 * @return the calculated plan of the simplified user points
+		 */
+		public DivePlan<SETTINGS, STATE> getPlan() {
+			return plan;
+		}
+
+		/**
+		 * @return the number of user points dropped
+		 */
+		public int getRemoved() {
+			return removed;
+		}
+
+		/**
+		 * @return the largest difference in tissue loading between the profiles
+		 * @see DecoAlgorithm#loadingDifference(AlgoState, AlgoState)
+		 */
+		public double getMaxLoadingError() {
+			return maxLoadingError;
+		}
+	}
+
+	/**
+	 * @param algo the algorithm the plan will be calculated with
+	 * @param userPlan the plan - not changed
+	 * @param tolerance the most (m) the profile may move at a dropped point
+	 * @return the simplified plan
+	 */
+	public static <SETTINGS extends DiveSettings, STATE extends AlgoState> Simplification<SETTINGS, STATE> simplify(
+			DecoAlgorithm<SETTINGS, STATE> algo, DivePlan<SETTINGS, STATE> userPlan, double tolerance) {
+		List<PlanPoint<STATE>> points = userPlan.getUserPoints();
+		int size = points.size();
+		double[] times = reached(points, userPlan.getAlgoSettings());
+		boolean[] keep = anchors(points);
+
+		//simplify between each pair of anchors
+		int from = 0;
+		for (int i=1;i<size;i++) {
+			if (keep[i]) {
+				reduce(points, times, keep, from, i, tolerance, userPlan.getAlgoSettings());
+				from = i;
+			}
+		}
+
+		List<PlanPoint<STATE>> kept = new ArrayList<>();
+		for (int i=0;i<size;i++) {
+			if (keep[i]) {
+				kept.add(new PlanPoint<>(points.get(i)));
+			}
+		}
+		DivePlan<SETTINGS, STATE> plan = new DivePlan<>();
+		plan.setAlgoSettings(userPlan.getAlgoSettings());
+		plan.setUserPoints(kept);
+		plan.setGases(new ArrayList<>(userPlan.getGases()));
+		plan.setLastPlan(userPlan.getLastPlan());
+		plan.setSurfaceInterval(userPlan.getSurfaceInterval());
+		DivePlan<SETTINGS, STATE> simplified = algo.calculateDive(plan);
+		return new Simplification<>(simplified, size-kept.size(), loadingError(algo, userPlan, times, simplified));
+	}
+
+	/**
+	 * @return the runtime at which the planner would reach each user point if it didn't stop on the way -
+	 * the end of any hold or duration at its depth
+	 */
+	private static <STATE extends AlgoState> double[] reached(List<PlanPoint<STATE>> points, DiveSettings settings) {
+		double[] times = new double[points.size()];
+		double time = 0;
+		double depth = 0;
+		for (int i=0;i<times.length;i++) {
+			PlanPoint<STATE> p = points.get(i);
+			double arrival = time+(p.depth>depth?(p.depth-depth)/settings.descentRate:(depth-p.depth)/settings.ascentRate);
+			time = times[i] = p.durationPoint?arrival+p.duration:Math.max(p.time, arrival);
+			depth = p.depth;
+		}
+		return times;
+	}
+
+	/**
+	 * @return the runtime at which each user point of a calculated plan is reached -
+	 * the end of any hold or duration at its depth
+	 */
+	private static <STATE extends AlgoState> double[] reached(DivePlan<?, STATE> plan) {
+		List<PlanPoint<STATE>> result = plan.getResultPoints();
+		int[] starts = plan.checkpoints;
+		//the surface start point may have been added in front of the user points
+		int offset = plan.getUserPoints().get(0).getDepth()!=0?1:0;
+		double[] times = new double[plan.getUserPoints().size()];
+		for (int i=0;i<times.length;i++) {
+			//a planned point is the last result point emitted before the next planned point starts
+			int next = i+offset+1;
+			times[i] = result.get(next<starts.length?starts[next]-1:result.size()-1).time;
+		}
+		return times;
+	}
+	/**
+	 * @return the points that are always kept
+	 */
+	private static <STATE extends AlgoState> boolean[] anchors(List<PlanPoint<STATE>> points) {
+		int size = points.size();
+		boolean[] keep = new boolean[size];
+		keep[0] = true;
+		keep[size-1] = true;
+		int deepest = 0;
+		Gas gas = points.get(0).gas;
+		int direction = 0;
+		for (int i=1;i<size;i++) {
+			PlanPoint<STATE> p = points.get(i);
+			if (p.durationPoint) {
+				keep[i] = true;
+			}
+			if (p.gas!=null && !p.gas.equals(gas)) {
+				keep[i] = true;
+				gas = p.gas;
+			}
+			if (p.depth>points.get(deepest).depth) {
+				deepest = i;
+			}
+			//a turn between going down and coming up keeps the point it turned at
+			int move = (int)Math.signum(p.depth-points.get(i-1).depth);
+			if (move!=0) {
+				if (direction!=0 && move!=direction) {
+					keep[i-1] = true;
+				}
+				direction = move;
+			}
+		}
+		keep[deepest] = true;
+		return keep;
+	}
+
+	/**
+	 * Douglas-Peucker between two kept points - iterative so long profiles can't overflow the stack
+	 */
+	private static <STATE extends AlgoState> void reduce(List<PlanPoint<STATE>> points, double[] times,
+			boolean[] keep, int first, int last, double tolerance, DiveSettings settings) {
+		ArrayDeque<int[]> ranges = new ArrayDeque<>();
+		ranges.push(new int[]{first, last});
+		while (!ranges.isEmpty()) {
+			int[] range = ranges.pop();
+			int start = range[0];
+			int end = range[1];
+			double furthest = tolerance;
+			int split = -1;
+			for (int i=start+1;i<end;i++) {
+				double distance = Math.abs(points.get(i).depth-depthAt(points, times, start, end, times[i], settings));
+				if (distance>furthest) {
+					furthest = distance;
+					split = i;
+				}
+			}
+			if (split>0) {
+				keep[split] = true;
+				ranges.push(new int[]{start, split});
+				ranges.push(new int[]{split, end});
+			}
+		}
+	}
+
+	/**
+	 * @return the depth at a time on the segment the planner would fly between two points if
+	 * the points between them were dropped. Descents (and ascents to a duration point) go at the
+	 * settings' rate and then hold the depth, other ascents go straight to the point
+	 */
+	private static <STATE extends AlgoState> double depthAt(List<PlanPoint<STATE>> points, double[] times,
+			int start, int end, double time, DiveSettings settings) {
+		double startDepth = points.get(start).depth;
+		double endDepth = points.get(end).depth;
+		double elapsed = time-times[start];
+		if (endDepth>startDepth) {
+			return Math.min(endDepth, startDepth+elapsed*settings.descentRate);
+		}
+		if (points.get(end).durationPoint) {
+			return Math.max(endDepth, startDepth-elapsed*settings.ascentRate);
+		}
+		double span = times[end]-times[start];
+		if (span<=0) {
+			return endDepth;
+		}
+		return startDepth+(endDepth-startDepth)*elapsed/span;
+	}
+
+	/**
+	 * Replay the original's points up to the limit and compare the states with the simplified plan's
+	 * at each of its result points
+	 */
+	private static <SETTINGS extends DiveSettings, STATE extends AlgoState> double loadingError(
+			DecoAlgorithm<SETTINGS, STATE> algo, DivePlan<SETTINGS, STATE> userPlan, double[] times,
+			DivePlan<SETTINGS, STATE> simplified) {
+		SETTINGS settings = userPlan.getAlgoSettings();
+		List<PlanPoint<STATE>> points = userPlan.getUserPoints();
+		double[] reached = reached(simplified);
+		double limit = Math.min(times[times.length-1], reached[reached.length-1]);
+		Comparison<SETTINGS, STATE> comparison = new Comparison<>(algo, userPlan, simplified.getResultPoints());
+		LogReplay<SETTINGS, STATE> replay = comparison.replay;
+
+		for (int i=0;i<points.size() && replay.getTime()<limit;i++) {
+			//descents (and ascents to a duration point) go at the settings' rate and then hold the depth
+			PlanPoint<STATE> p = points.get(i);
+			double depth = replay.getDepth();
+			double end = Math.min(times[i], limit);
+			double arrival = end;
+			if (p.depth>depth) {
+				arrival = Math.min(end, replay.getTime()+(p.depth-depth)/settings.descentRate);
+			}
+			else if (p.durationPoint) {
+				arrival = Math.min(end, replay.getTime()+(depth-p.depth)/settings.ascentRate);
+			}
+			comparison.advance(arrival, p.depth);
+			comparison.advance(end, p.depth);
+		}
+		return comparison.error;
+	}
+
+	/**
+	 * A replay of the original profile on the gases the simplified plan breathes at the time
+	 */
+	private static class Comparison<SETTINGS extends DiveSettings, STATE extends AlgoState> {
+		final DecoAlgorithm<SETTINGS, STATE> algo;
+		final List<PlanPoint<STATE>> planned;
+		final LogReplay<SETTINGS, STATE> replay;
+		int next = 1;//the next result point to compare with
+		double error;
+
+		Comparison(DecoAlgorithm<SETTINGS, STATE> algo, DivePlan<SETTINGS, STATE> userPlan, List<PlanPoint<STATE>> planned) {
+			this.algo = algo;
+			this.planned = planned;
+			replay = new LogReplay<>(algo, userPlan.getAlgoSettings(), userPlan.getGases(), planned.get(0).gas,
+					userPlan.getLastPlan(), userPlan.getSurfaceInterval());
+		}
+
+		/**
+		 * Advance the replay along a straight line to a runtime and depth comparing its state with the
+		 * planned state of each result point passed on the way
+		 */
+		void advance(double time, double depth) {
+			double startTime = replay.getTime();
+			double startDepth = replay.getDepth();
+			while (next<planned.size() && planned.get(next).time<=time) {
+				PlanPoint<STATE> p = planned.get(next);
+				if (p.time>replay.getTime()) {
+					sample(p.time, startDepth+(depth-startDepth)*(p.time-startTime)/(time-startTime));
+				}
+				error = Math.max(error, algo.loadingDifference(replay.getState(), p.getAlgoState()));
+				next++;
+			}
+			if (time>replay.getTime()) {
+				sample(time, depth);
+			}
+		}
+
+		private void sample(double time, double depth) {
+			//a segment is breathed on the gas of the point it starts from
+			replay.setGas(planned.get(next-1).gas);
+			replay.sample(time, depth);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Plain loop tissue updates, used wherever the Vector API isn't available
+ */
+class ScalarTissueKernels implements TissueKernels {
+
+	@Override
+	public void haldane(double[] n2, double[] he, double n2Insp, double heInsp,
+			double[] n2Factors, double[] heFactors, double[] n2Result, double[] heResult) {
+		Laws.haldane(n2, n2Insp, n2Factors, n2Result);
+		Laws.haldane(he, heInsp, heFactors, heResult);
+	}
+
+	@Override
+	public void schreiner(double n2Insp, double n2Rate, double heInsp, double heRate, double segTime,
+			double[] n2TimeConstants, double[] heTimeConstants, double[] n2Factors, double[] heFactors,
+			double[] n2, double[] he, double[] n2Result, double[] heResult) {
+		Laws.schreiner(n2Insp, n2Rate, segTime, n2TimeConstants, n2Factors, n2, n2Result);
+		Laws.schreiner(heInsp, heRate, segTime, heTimeConstants, heFactors, he, heResult);
+	}
+
+}
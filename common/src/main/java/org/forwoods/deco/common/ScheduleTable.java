@@ -0,0 +1,169 @@
+package org.forwoods.deco.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Tom
+ * A deco table - the ascent for every combination of a set of depths and bottom times
+ * on one set of gases.
+ * <p>
+ * The cells of a depth are planned as one growing plan. Each longer bottom time is added as
+ * another user point at the depth so the plan resumes from the end of the previous cell's bottom
+ * time - the descent and bottom are never planned again and each cell only costs the extra
+ * minutes at depth and its own ascent. Depths are planned in parallel.
+ *
+ * @param <STATE> Type parameter for the saturation state tracked by the algorithm
+ */
+public class ScheduleTable<STATE extends AlgoState> {
+
+	private final double[] depths;
+	private final double[] bottomTimes;
+	private final List<List<Cell<STATE>>> rows;
+
+	private ScheduleTable(double[] depths, double[] bottomTimes, List<List<Cell<STATE>>> rows) {
+		this.depths = depths;
+		this.bottomTimes = bottomTimes;
+		this.rows = rows;
+	}
+
+	/**
+	 * @param algo the algorithm to plan with
+	 * @param settings the settings for every cell
+	 * @param gases the gases for every cell
+	 * @param depths the depths (m)
+	 * @param bottomTimes the bottom times (runtime in minutes when the ascent starts)
+	 * @return the table - depths and bottom times in increasing order
+	 */
+	public static <SETTINGS extends DiveSettings, STATE extends AlgoState> ScheduleTable<STATE> generate(
+			DecoAlgorithm<SETTINGS, STATE> algo, SETTINGS settings, List<Gas> gases,
+			double[] depths, double[] bottomTimes) {
+		double[] sortedDepths = depths.clone();
+		Arrays.sort(sortedDepths);
+		double[] sortedTimes = bottomTimes.clone();
+		Arrays.sort(sortedTimes);
+
+		List<List<Cell<STATE>>> rows = IntStream.range(0, sortedDepths.length).parallel()
+				.mapToObj(i->row(algo, settings, gases, sortedDepths[i], sortedTimes))
+				.collect(Collectors.toList());
+		return new ScheduleTable<>(sortedDepths, sortedTimes, rows);
+	}
+
+	private static <SETTINGS extends DiveSettings, STATE extends AlgoState> List<Cell<STATE>> row(
+			DecoAlgorithm<SETTINGS, STATE> algo, SETTINGS settings, List<Gas> gases,
+			double depth, double[] bottomTimes) {
+		//arrive at depth - the descent pushes this to the arrival time
+		List<PlanPoint<STATE>> points = new ArrayList<>();
+		points.add(new PlanPoint<>(depth, 0));
+		DivePlan<SETTINGS, STATE> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		plan.setUserPoints(points);
+		plan.setGases(gases);
+
+		List<Cell<STATE>> row = new ArrayList<>(bottomTimes.length);
+		for (double bottomTime:bottomTimes) {
+			//resumes from the end of the last cell's bottom time
+			plan.addUserPoint(plan.getUserPoints().size(), new PlanPoint<>(depth, bottomTime));
+			plan = algo.calculateDive(plan);
+			row.add(new Cell<>(depth, bottomTime, plan));
+		}
+		return row;
+	}
+
+	public double[] getDepths() {
+		return depths.clone();
+	}
+
+	public double[] getBottomTimes() {
+		return bottomTimes.clone();
+	}
+
+	/**
+	 * @param depthIndex index into {@link #getDepths()}
+	 * @param timeIndex index into {@link #getBottomTimes()}
+	 * @return the cell
+	 */
+	public Cell<STATE> get(int depthIndex, int timeIndex) {
+		return rows.get(depthIndex).get(timeIndex);
+	}
+
+	/**
+	 * The ascent from one depth and bottom time
+	 */
+	public static class Cell<STATE extends AlgoState> {
+
+		private final double depth;
+		private final double bottomTime;
+		private final List<PlanPoint<STATE>> ascent;
+		private final Map<Gas, Double> gasUsed;
+
+		Cell(double depth, double bottomTime, DivePlan<?, STATE> plan) {
+			this.depth = depth;
+			this.bottomTime = bottomTime;
+			List<PlanPoint<STATE>> points = plan.getResultPoints();
+			int leave = points.size()-1;
+			while (leave>0 && !(points.get(leave).depth==depth && points.get(leave).isUserPoint())) {
+				leave--;
+			}
+			ascent = Collections.unmodifiableList(new ArrayList<>(points.subList(leave, points.size())));
+			gasUsed = plan.getGasVols();
+		}
+
+		public double getDepth() {
+			return depth;
+		}
+
+		public double getBottomTime() {
+			return bottomTime;
+		}
+
+		/**
+		 * @return the points from leaving the bottom to the surface
+		 */
+		public List<PlanPoint<STATE>> getAscent() {
+			return ascent;
+		}
+
+		/**
+		 * @return the runtime at the surface
+		 */
+		public double getRuntime() {
+			return ascent.get(ascent.size()-1).time;
+		}
+
+		/**
+		 * @return the time to surface from the end of the bottom time
+		 */
+		public double getTimeToSurface() {
+			return getRuntime()-ascent.get(0).time;
+		}
+
+		/**
+		 * @return the minutes spent at each stop depth - deepest first
+		 */
+		public Map<Double, Double> getStops() {
+			Map<Double, Double> stops = new LinkedHashMap<>();
+			for (int i=1;i<ascent.size();i++) {
+				PlanPoint<STATE> last = ascent.get(i-1);
+				PlanPoint<STATE> next = ascent.get(i);
+				if (next.depth==last.depth && next.depth<depth) {
+					stops.merge(next.depth, next.time-last.time, Double::sum);
+				}
+			}
+			return stops;
+		}
+
+		/**
+		 * @return the volume of each gas used on the whole dive
+		 */
+		public Map<Gas, Double> getGasUsed() {
+			return gasUsed;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * How much a plan is varied by a {@link GasSensitivity} analysis.
+ * SAC and rates are scaled by normally distributed factors and the ascent is delayed
+ * by a uniformly distributed time at the deepest point
+ */
+public class SensitivitySettings {
+
+	public int samples=10000;
+	public long seed=42;//the same seed gives the same results
+
+	public float sacSpread=0.15f;//standard deviation of SAC as a fraction of the planned SAC
+	public float rateSpread=0.1f;//standard deviation of descent and ascent rates as a fraction of the planned rates
+	public float maxDelay=3;//mins - longest delay at depth before the ascent
+
+}
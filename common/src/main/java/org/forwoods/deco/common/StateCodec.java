@@ -0,0 +1,21 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Packs an algorithm's saturation state into a fixed number of doubles
+ * so that a {@link PlanTable} can hold the state of every point in one array.
+ * Decoding must give back a state that plans exactly as the original would.
+ *
+ * @param <STATE> the state type
+ */
+public interface StateCodec<STATE extends AlgoState> {
+
+	/**
+	 * @return the number of doubles used for each state
+	 */
+	int width();
+
+	void encode(STATE state, double[] dest, int offset);
+
+	STATE decode(double[] src, int offset);
+}
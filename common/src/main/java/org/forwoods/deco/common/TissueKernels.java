@@ -0,0 +1,28 @@
+package org.forwoods.deco.common;
+
+/**
+ * @author Tom
+ * Batch tissue updates for all compartments of both inert gases.
+ * The Vector API implementation is used when it is available (jdk 17+ run with
+ * --add-modules jdk.incubator.vector) otherwise the scalar loops are used.
+ * Implementations must give exactly the same results as the scalar kernels in {@link Laws}
+ */
+interface TissueKernels {
+
+	void haldane(double[] n2, double[] he, double n2Insp, double heInsp,
+			double[] n2Factors, double[] heFactors, double[] n2Result, double[] heResult);
+
+	void schreiner(double n2Insp, double n2Rate, double heInsp, double heRate, double segTime,
+			double[] n2TimeConstants, double[] heTimeConstants, double[] n2Factors, double[] heFactors,
+			double[] n2, double[] he, double[] n2Result, double[] heResult);
+
+	static TissueKernels load() {
+		try {
+			return (TissueKernels) Class.forName("org.forwoods.deco.common.VectorTissueKernels")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			//not compiled in, too old a jdk or the incubator module isn't enabled
+			return new ScalarTissueKernels();
+		}
+	}
+}
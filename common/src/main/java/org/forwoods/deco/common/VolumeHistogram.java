@@ -0,0 +1,83 @@
+package org.forwoods.deco.common;
+
+import java.util.Arrays;
+
+/**
+ * @author Tom
+ * Counts of gas volumes in bins that are each {@link #RESOLUTION} wider than the last so
+ * percentiles can be read off without keeping every volume. A percentile is read as the top of
+ * its bin - at most {@link #RESOLUTION} above the volume it stands for - kept within the smallest
+ * and largest volumes counted, which are kept exactly for the first and last ranks.
+ * <p>
+ * The size only depends on the largest volume (about 7000 bins for 1000 litres), not on
+ * how many volumes are counted, and histograms of separate samples are added together.
+ */
+final class VolumeHistogram {
+
+	static final double RESOLUTION = 0.001;
+	private static final double LOG_STEP = Math.log1p(RESOLUTION);
+
+	private int[] counts = new int[0];//bin i counts volumes up to (1+RESOLUTION)^i litres
+	private int unused;//volumes of 0 - the gas wasn't breathed
+	private long total;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	void add(double volume) {
+		total++;
+		min = Math.min(min, volume);
+		max = Math.max(max, volume);
+		if (volume<=0) {
+			unused++;
+			return;
+		}
+		//volumes under a litre all go in the first bin
+		int bin = Math.max(0, (int)Math.ceil(Math.log(volume)/LOG_STEP));
+		if (bin>=counts.length) {
+			counts = Arrays.copyOf(counts, bin+1);
+		}
+		counts[bin]++;
+	}
+
+	void addAll(VolumeHistogram other) {
+		if (other.counts.length>counts.length) {
+			counts = Arrays.copyOf(counts, other.counts.length);
+		}
+		for (int i=0;i<other.counts.length;i++) {
+			counts[i] += other.counts[i];
+		}
+		unused += other.unused;
+		total += other.total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param percentile 0-100
+	 * @return the volume that was enough for that percentage of the volumes counted - by nearest rank
+	 */
+	double percentile(double percentile) {
+		if (total==0) {
+			throw new IllegalStateException("No volumes have been counted");
+		}
+		long rank = Math.min(Math.max((long)Math.ceil(percentile/100*total), 1), total);
+		if (rank==total) {
+			return max;
+		}
+		long seen = unused;
+		if (rank==1 || seen>=rank) {
+			return min;
+		}
+		for (int i=0;i<counts.length;i++) {
+			seen += counts[i];
+			if (seen>=rank) {
+				return Math.min(max, Math.max(min, Math.exp(i*LOG_STEP)));
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,70 @@
+package org.forwoods.deco.common;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Tom
+ * Vector API tissue updates.
+ * Only lanewise add, subtract, multiply and divide are used, in the same order as
+ * the scalar kernels, so the results are identical to them bit for bit.
+ * Compiled separately for jdk 17 - see the vector profile in the pom
+ */
+class VectorTissueKernels implements TissueKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public void haldane(double[] n2, double[] he, double n2Insp, double heInsp,
+			double[] n2Factors, double[] heFactors, double[] n2Result, double[] heResult) {
+		haldane(n2, n2Insp, n2Factors, n2Result);
+		haldane(he, heInsp, heFactors, heResult);
+	}
+
+	private static void haldane(double[] initial, double inspired, double[] factors, double[] result) {
+		int i=0;
+		int bound = SPECIES.loopBound(result.length);
+		DoubleVector insp = DoubleVector.broadcast(SPECIES, inspired);
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1d);
+		for (;i<bound;i+=SPECIES.length()) {
+			DoubleVector p = DoubleVector.fromArray(SPECIES, initial, i);
+			DoubleVector f = DoubleVector.fromArray(SPECIES, factors, i);
+			p.add(insp.sub(p).mul(one.sub(f))).intoArray(result, i);
+		}
+		for (;i<result.length;i++) {
+			result[i] = initial[i] + (inspired - initial[i]) * (1d - factors[i]);
+		}
+	}
+
+	@Override
+	public void schreiner(double n2Insp, double n2Rate, double heInsp, double heRate, double segTime,
+			double[] n2TimeConstants, double[] heTimeConstants, double[] n2Factors, double[] heFactors,
+			double[] n2, double[] he, double[] n2Result, double[] heResult) {
+		schreiner(n2Insp, n2Rate, segTime, n2TimeConstants, n2Factors, n2, n2Result);
+		schreiner(heInsp, heRate, segTime, heTimeConstants, heFactors, he, heResult);
+	}
+
+	private static void schreiner(double initInsp, double rate, double segTime,
+			double[] timeConstants, double[] factors, double[] initial, double[] result) {
+		int i=0;
+		int bound = SPECIES.loopBound(result.length);
+		DoubleVector insp = DoubleVector.broadcast(SPECIES, initInsp);
+		DoubleVector r = DoubleVector.broadcast(SPECIES, rate);
+		DoubleVector t = DoubleVector.broadcast(SPECIES, segTime);
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1d);
+		for (;i<bound;i+=SPECIES.length()) {
+			DoubleVector k = DoubleVector.fromArray(SPECIES, timeConstants, i);
+			DoubleVector p = DoubleVector.fromArray(SPECIES, initial, i);
+			DoubleVector f = DoubleVector.fromArray(SPECIES, factors, i);
+			insp.add(r.mul(t.sub(one.div(k))))
+				.sub(insp.sub(p).sub(r.div(k)).mul(f))
+				.intoArray(result, i);
+		}
+		for (;i<result.length;i++) {
+			double k = timeConstants[i];
+			result[i] = initInsp+rate*(segTime - 1/k) -
+				(initInsp - initial[i] - rate/k) * factors[i];
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package org.forwoods.deco.buhlmann;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+
+/**
+ * User plans for the tests - not calculated
+ */
+final class Plans {
+
+	private Plans() {
+	}
+
+	static DivePlan<BuhlmannSettings, BuhlmannState> plan(BuhlmannSettings settings, PlanPoint<BuhlmannState> bottom, Gas... gases) {
+		return plan(settings, Arrays.asList(bottom), gases);
+	}
+
+	static DivePlan<BuhlmannSettings, BuhlmannState> plan(BuhlmannSettings settings, List<PlanPoint<BuhlmannState>> points, Gas... gases) {
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		plan.setUserPoints(new ArrayList<>(points));
+		plan.setGases(new ArrayList<>(Arrays.asList(gases)));
+		return plan;
+	}
+}
@@ -0,0 +1,199 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.assertj.core.data.Offset;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBuhlmann {
+
+	private BuhlmannAlgo algo;
+	Offset<Double> rounding = Offset.offset(1e-5);
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+	}
+
+	@Test
+	public void testNoStopDive() {
+		//a short shallow dive should come straight up
+		BuhlmannSettings settings = new BuhlmannSettings();
+		DivePlan<BuhlmannSettings, BuhlmannState> outputPlan = algo.calculateDive(
+				plan(settings, new PlanPoint<>(18, 20), Gas.AIR));
+
+		List<PlanPoint<BuhlmannState>> resultPoints = outputPlan.getResultPoints();
+		assertThat(resultPoints).hasSize(4);
+		PlanPoint<BuhlmannState> surface = resultPoints.get(3);
+		assertThat(surface.depth).isEqualTo(0);
+		assertThat(surface.time).isEqualTo(20+18/settings.ascentRate, rounding);
+		assertThat(resultPoints).extracting(pp->pp.getAlgoState().isDeco()).containsOnly(false);
+	}
+
+	@Test
+	public void testDecoStops() {
+		BuhlmannSettings settings = new BuhlmannSettings();
+		DivePlan<BuhlmannSettings, BuhlmannState> outputPlan = algo.calculateDive(
+				plan(settings, new PlanPoint<>(40, 25), Gas.AIR, Gas.FIFTY));
+
+		List<PlanPoint<BuhlmannState>> resultPoints = outputPlan.getResultPoints();
+		PlanPoint<BuhlmannState> lastStop = resultPoints.get(resultPoints.size()-2);
+		assertThat(lastStop.depth).isEqualTo(settings.lastStopDepth);
+		assertThat(lastStop.gas).isEqualTo(Gas.FIFTY);
+		assertThat(lastStop.getAlgoState().ceiling(settings.gfHigh)).isLessThanOrEqualTo(0);
+
+		for (PlanPoint<BuhlmannState> p:resultPoints.subList(3, resultPoints.size()-1)) {
+			//stops are on the step size and end on whole minutes
+			assertThat(p.depth%settings.stepSize).isEqualTo(0);
+			assertThat(p.getAlgoState().isDeco()).isTrue();
+			//every point has its own state
+			assertThat(p.getAlgoState()).isNotSameAs(resultPoints.get(resultPoints.indexOf(p)-1).getAlgoState());
+		}
+	}
+
+	@Test
+	public void testStopsEndWhenTheAscentClears() {
+		BuhlmannSettings settings = new BuhlmannSettings();
+		List<PlanPoint<BuhlmannState>> resultPoints = algo.calculateDive(
+				plan(settings, new PlanPoint<>(50, 25), Gas.AIR, Gas.FIFTY)).getResultPoints();
+		int stops = 0;
+		for (int i=1;i<resultPoints.size()-1;i++) {
+			PlanPoint<BuhlmannState> end = resultPoints.get(i);
+			PlanPoint<BuhlmannState> up = resultPoints.get(i+1);
+			if (end.depth==resultPoints.get(i-1).depth && up.depth<end.depth) {
+				//the state the stop ends with is the one the stop search cleared the next level with
+				BuhlmannState state = end.getAlgoState();
+				double gf = BuhlmannAlgo.gradientFactor(settings, state.getFirstStop(), up.depth);
+				assertThat(state.ceiling(gf)).isLessThanOrEqualTo(up.depth+1e-9);
+				stops++;
+			}
+		}
+		assertThat(stops).isGreaterThan(3);
+	}
+
+	@Test
+	public void testGradientFactors() {
+		BuhlmannSettings conservative = new BuhlmannSettings();
+		conservative.gfLow = 0.2f;
+		conservative.gfHigh = 0.7f;
+		BuhlmannSettings liberal = new BuhlmannSettings();
+		liberal.gfLow = 0.5f;
+		liberal.gfHigh = 0.9f;
+
+		List<PlanPoint<BuhlmannState>> conservativePoints = algo.calculateDive(
+				plan(conservative, new PlanPoint<>(50, 20), Gas.AIR)).getResultPoints();
+		List<PlanPoint<BuhlmannState>> liberalPoints = algo.calculateDive(
+				plan(liberal, new PlanPoint<>(50, 20), Gas.AIR)).getResultPoints();
+
+		double conservativeRuntime = conservativePoints.get(conservativePoints.size()-1).time;
+		double liberalRuntime = liberalPoints.get(liberalPoints.size()-1).time;
+		assertThat(conservativeRuntime).isGreaterThan(liberalRuntime);
+		assertThat(conservativePoints.get(3).depth).isGreaterThan(liberalPoints.get(3).depth);
+	}
+
+	@Test
+	public void testTrimix() {
+		BuhlmannSettings settings = new BuhlmannSettings();
+		Gas trimix = new Gas(15, 55);
+		DivePlan<BuhlmannSettings, BuhlmannState> outputPlan = algo.calculateDive(
+				plan(settings, new PlanPoint<>(80, 20), trimix, new Gas(21, 35), Gas.FIFTY));
+
+		List<PlanPoint<BuhlmannState>> resultPoints = outputPlan.getResultPoints();
+		PlanPoint<BuhlmannState> bottom = null;
+		for (PlanPoint<BuhlmannState> p:resultPoints) {
+			if (p.depth==80) bottom = p;
+		}
+		assertThat(bottom.gas).isEqualTo(trimix);
+		for (double he:bottom.getAlgoState().he) {
+			assertThat(he).isGreaterThan(0);
+		}
+		PlanPoint<BuhlmannState> surface = resultPoints.get(resultPoints.size()-1);
+		assertThat(surface.depth).isEqualTo(0);
+		assertThat(surface.getAlgoState().ceiling(settings.gfHigh)).isLessThanOrEqualTo(0);
+	}
+
+	@Test
+	public void testRepetitiveDive() {
+		BuhlmannSettings settings = new BuhlmannSettings();
+		DivePlan<BuhlmannSettings, BuhlmannState> first = algo.calculateDive(
+				plan(settings, new PlanPoint<>(40, 25), Gas.AIR));
+		BuhlmannState finalState = first.getFinalState();
+		assertThat(finalState).isSameAs(first.getResultPoints().get(first.getResultPoints().size()-1).getAlgoState());
+		double[] finalN2 = finalState.n2.clone();
+
+		DivePlan<BuhlmannSettings, BuhlmannState> fresh = algo.calculateDive(
+				plan(settings, new PlanPoint<>(30, 30), Gas.AIR));
+		DivePlan<BuhlmannSettings, BuhlmannState> secondUser = plan(settings, new PlanPoint<>(30, 30), Gas.AIR);
+		secondUser.setLastPlan(first);
+		secondUser.setSurfaceInterval(60);
+		DivePlan<BuhlmannSettings, BuhlmannState> second = algo.calculateDive(secondUser);
+
+		//residual nitrogen makes the second dive longer
+		assertThat(runtime(second)).isGreaterThan(runtime(fresh));
+		assertThat(second.getLastPlan()).isSameAs(first);
+		//the first plan is left as it was
+		assertThat(finalState.n2).containsExactly(finalN2);
+
+		//after long enough at the surface it is a first dive again
+		secondUser.setSurfaceInterval(48*60);
+		assertThat(runtime(algo.calculateDive(secondUser))).isEqualTo(runtime(fresh));
+
+		//a last plan that hasn't been calculated is calculated first
+		DivePlan<BuhlmannSettings, BuhlmannState> chained = plan(settings, new PlanPoint<>(30, 30), Gas.AIR);
+		chained.setLastPlan(plan(settings, new PlanPoint<>(40, 25), Gas.AIR));
+		chained.setSurfaceInterval(60);
+		assertThat(runtime(algo.calculateDive(chained))).isEqualTo(runtime(second));
+	}
+
+	@Test
+	public void testOxygenExposure() {
+		BuhlmannSettings settings = new BuhlmannSettings();
+		DivePlan<BuhlmannSettings, BuhlmannState> first = algo.calculateDive(
+				plan(settings, new PlanPoint<>(40, 25), Gas.AIR, Gas.FIFTY));
+		List<PlanPoint<BuhlmannState>> points = first.getResultPoints();
+		for (int i=1;i<points.size();i++) {
+			assertThat(points.get(i).getCNS()).isGreaterThanOrEqualTo(points.get(i-1).getCNS());
+			assertThat(points.get(i).getOTU()).isGreaterThanOrEqualTo(points.get(i-1).getOTU());
+		}
+		PlanPoint<BuhlmannState> end = points.get(points.size()-1);
+		//about 23 mins at 1.05 bar ppO2 then deco on EAN50
+		assertThat(end.getCNS()).isBetween(8.0, 30.0);
+		assertThat(end.getOTU()).isBetween(25.0, 80.0);
+
+		//CNS carries over to a repetitive dive with a 90 minute half time
+		DivePlan<BuhlmannSettings, BuhlmannState> secondUser = plan(settings, new PlanPoint<>(30, 30), Gas.AIR);
+		secondUser.setLastPlan(first);
+		secondUser.setSurfaceInterval(90);
+		PlanPoint<BuhlmannState> start = algo.calculateDive(secondUser).getResultPoints().get(0);
+		assertThat(start.getCNS()).isEqualTo(end.getCNS()/2, rounding);
+		assertThat(start.getOTU()).isEqualTo(end.getOTU());
+	}
+
+	private double runtime(DivePlan<BuhlmannSettings, BuhlmannState> plan) {
+		List<PlanPoint<BuhlmannState>> points = plan.getResultPoints();
+		return points.get(points.size()-1).time;
+	}
+
+	@Test
+	public void testInterrupted() {
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = plan(new BuhlmannSettings(), new PlanPoint<>(40, 25), Gas.AIR);
+		Thread.currentThread().interrupt();
+		try {
+			assertThatThrownBy(()->algo.calculateDive(plan)).isInstanceOf(CancellationException.class);
+		}
+		finally {
+			Thread.interrupted();
+		}
+		//planning again once the interrupt is cleared
+		assertThat(algo.calculateDive(plan).getResultPoints()).isNotEmpty();
+	}
+}
@@ -0,0 +1,95 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.List;
+import java.util.Map;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestContingencies {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+	private PlanPoint<BuhlmannState> dive;
+	private Gas bottom;
+	private Gas travel;
+	private Gas ean50;
+	private Gas oxygen;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+		dive = new PlanPoint<>(60, 25);
+		bottom = new Gas(18, 45);
+		travel = new Gas(32, 0);
+		ean50 = new Gas(50, 0);
+		ean50.setDecoGas(true);
+		oxygen = new Gas(100, 0);
+		oxygen.setDecoGas(true);
+	}
+
+	@Test
+	public void testContingenciesMatchPlansWithoutTheGas() {
+		DivePlan<BuhlmannSettings, BuhlmannState> base = algo.calculateDive(plan(settings, dive, bottom, travel, ean50, oxygen));
+		Map<Gas, DivePlan<BuhlmannSettings, BuhlmannState>> contingencies = algo.calculateContingencies(base);
+		assertThat(contingencies.keySet()).containsExactly(ean50, oxygen);
+
+		DivePlan<BuhlmannSettings, BuhlmannState> noEan50 = algo.calculateDive(plan(settings, dive, bottom, travel, oxygen));
+		DivePlan<BuhlmannSettings, BuhlmannState> noOxygen = algo.calculateDive(plan(settings, dive, bottom, travel, ean50));
+		assertThat(contingencies.get(ean50).getResultPoints().toString()).isEqualTo(noEan50.getResultPoints().toString());
+		assertThat(contingencies.get(oxygen).getResultPoints().toString()).isEqualTo(noOxygen.getResultPoints().toString());
+		assertThat(contingencies.get(ean50).getResultPoints()).extracting(p->p.getGas()).doesNotContain(ean50);
+		assertThat(contingencies.get(ean50).getGases()).containsExactly(bottom, travel, oxygen);
+		//the volumes are of the gases that are left
+		for (DivePlan<BuhlmannSettings, BuhlmannState> contingency:contingencies.values()) {
+			assertThat(contingency.getGasVols().keySet()).containsExactlyElementsOf(contingency.getGases());
+			for (PlanPoint<BuhlmannState> p:contingency.getResultPoints()) {
+				assertThat(p.gasUsed.keySet()).containsExactlyElementsOf(contingency.getGases());
+			}
+		}
+		assertThat(contingencies.get(ean50).getGasVols()).isEqualTo(noEan50.getGasVols());
+		assertThat(contingencies.get(oxygen).getGasVols()).isEqualTo(noOxygen.getGasVols());
+
+		//everything before the gas is first breathed is carried on from the plan
+		List<PlanPoint<BuhlmannState>> points = base.getResultPoints();
+		List<PlanPoint<BuhlmannState>> lost = contingencies.get(ean50).getResultPoints();
+		int shared = 0;
+		while (lost.get(shared).getAlgoState()==points.get(shared).getAlgoState()) shared++;
+		assertThat(points.get(shared).getGas()).isEqualTo(ean50);
+		assertThat(points.get(shared-1).getGas()).isNotEqualTo(ean50);
+		//losing a gas makes the ascent longer
+		assertThat(lost.get(lost.size()-1).time).isGreaterThan(points.get(points.size()-1).time);
+	}
+
+	@Test
+	public void testLostOnTheWayDown() {
+		//shallow enough to breathe the deco gas from the start
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(settings, new PlanPoint<>(20, 40), travel, ean50);
+		DivePlan<BuhlmannSettings, BuhlmannState> base = algo.calculateDive(userPlan);
+		assertThat(base.getResultPoints().get(0).getGas()).isEqualTo(ean50);
+
+		DivePlan<BuhlmannSettings, BuhlmannState> contingency = algo.calculateContingencies(base).get(ean50);
+		DivePlan<BuhlmannSettings, BuhlmannState> without = algo.calculateDive(plan(settings, new PlanPoint<>(20, 40), travel));
+		assertThat(contingency.getResultPoints().toString()).isEqualTo(without.getResultPoints().toString());
+		assertThat(contingency.getGasVols()).isEqualTo(without.getGasVols());
+	}
+
+	@Test
+	public void testUnusedGas() {
+		//never the best gas anywhere
+		Gas deep = new Gas(15, 55);
+		deep.setDecoGas(true);
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(settings, dive, bottom, travel, ean50, deep);
+		Map<Gas, DivePlan<BuhlmannSettings, BuhlmannState>> contingencies = algo.calculateContingencies(userPlan);
+		assertThat(contingencies.keySet()).containsExactly(ean50, deep);
+		assertThat(contingencies.get(deep).getResultPoints().toString())
+			.isEqualTo(algo.calculateDive(userPlan).getResultPoints().toString());
+	}
+}
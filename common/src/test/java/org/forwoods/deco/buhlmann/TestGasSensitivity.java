@@ -0,0 +1,64 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.GasSensitivity;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.SensitivitySettings;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGasSensitivity {
+
+	private BuhlmannAlgo algo;
+	private DivePlan<BuhlmannSettings, BuhlmannState> plan;
+	private SensitivitySettings sensitivity;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		plan = plan(new BuhlmannSettings(), new PlanPoint<>(40, 25), Gas.AIR, Gas.FIFTY);
+		sensitivity = new SensitivitySettings();
+		sensitivity.samples = 500;
+	}
+
+	@Test
+	public void testNoSpread() {
+		sensitivity.sacSpread = 0;
+		sensitivity.rateSpread = 0;
+		sensitivity.maxDelay = 0;
+		GasSensitivity result = GasSensitivity.analyse(algo, plan, sensitivity);
+		DivePlan<BuhlmannSettings, BuhlmannState> planned = algo.calculateDive(plan);
+		for (Gas gas:plan.getGases()) {
+			assertThat(result.getP50(gas)).isCloseTo(planned.getGasVols().get(gas), within(1e-9));
+			assertThat(result.getP99(gas)).isEqualTo(result.getP50(gas));
+		}
+		assertThat(result.getSamples()).isEqualTo(500);
+	}
+
+	@Test
+	public void testPercentiles() {
+		GasSensitivity result = GasSensitivity.analyse(algo, plan, sensitivity);
+		DivePlan<BuhlmannSettings, BuhlmannState> planned = algo.calculateDive(plan);
+		for (Gas gas:plan.getGases()) {
+			assertThat(result.getP50(gas)).isLessThan(result.getP95(gas));
+			assertThat(result.getP95(gas)).isLessThanOrEqualTo(result.getP99(gas));
+			assertThat(result.percentile(gas, 0)).isLessThan(planned.getGasVols().get(gas));
+			assertThat(result.percentile(gas, 100)).isGreaterThan(planned.getGasVols().get(gas));
+		}
+		//the plan itself is left alone
+		assertThat(plan.getUserPoints().get(0).time).isEqualTo(25);
+		assertThat(plan.getAlgoSettings().bottomSAC).isEqualTo(new BuhlmannSettings().bottomSAC);
+
+		//only depends on the seed
+		GasSensitivity again = GasSensitivity.analyse(algo, plan, sensitivity);
+		assertThat(again.getP95(Gas.AIR)).isEqualTo(result.getP95(Gas.AIR));
+		sensitivity.seed++;
+		assertThat(GasSensitivity.analyse(algo, plan, sensitivity).getP95(Gas.AIR)).isNotEqualTo(result.getP95(Gas.AIR));
+	}
+}
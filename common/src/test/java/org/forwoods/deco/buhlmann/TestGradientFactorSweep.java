@@ -0,0 +1,59 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGradientFactorSweep {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	@Test
+	public void testSweepMatchesSinglePlans() {
+		float[][] pairs = {{0.3f, 0.7f}, {0.4f, 0.85f}, {0.5f, 0.8f}, {1, 1}};
+		List<PlanPoint<BuhlmannState>> points = Arrays.asList(
+				new PlanPoint<BuhlmannState>(40, 10),
+				new PlanPoint<BuhlmannState>(45, 25),
+				new PlanPoint<BuhlmannState>(21, 35));
+		List<DivePlan<BuhlmannSettings, BuhlmannState>> sweep = algo.sweepGradientFactors(plan(settings, points, Gas.AIR, Gas.FIFTY), pairs);
+		assertThat(sweep).hasSize(pairs.length);
+		//the user's settings are left alone
+		assertThat(settings.gfLow).isEqualTo(0.3f);
+		assertThat(settings.gfHigh).isEqualTo(0.8f);
+
+		for (int i=0;i<pairs.length;i++) {
+			BuhlmannSettings gf = new BuhlmannSettings();
+			gf.gfLow = pairs[i][0];
+			gf.gfHigh = pairs[i][1];
+			DivePlan<BuhlmannSettings, BuhlmannState> single = algo.calculateDive(plan(gf, points, Gas.AIR, Gas.FIFTY));
+			assertThat(sweep.get(i).getAlgoSettings().gfLow).isEqualTo(pairs[i][0]);
+			assertThat(sweep.get(i).getResultPoints().toString()).isEqualTo(single.getResultPoints().toString());
+			assertThat(sweep.get(i).getGasVols()).isEqualTo(single.getGasVols());
+		}
+
+		//the descent and bottom points are shared up to leaving the bottom
+		List<PlanPoint<BuhlmannState>> first = sweep.get(0).getResultPoints();
+		List<PlanPoint<BuhlmannState>> last = sweep.get(pairs.length-1).getResultPoints();
+		int shared = 0;
+		while (last.get(shared)==first.get(shared)) shared++;
+		assertThat(last.get(shared-1).depth).isEqualTo(45);
+		assertThat(last.get(shared-1).time).isEqualTo(25);
+		assertThat(last.get(shared).depth).isLessThan(45);
+		assertThat(last.size()).isLessThan(first.size());
+	}
+}
@@ -0,0 +1,84 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIncrementalPlanning {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	private List<PlanPoint<BuhlmannState>> multiLevel() {
+		return new ArrayList<>(Arrays.asList(
+				new PlanPoint<BuhlmannState>(40, 15),
+				new PlanPoint<BuhlmannState>(30, 25),
+				new PlanPoint<BuhlmannState>(20, 40),
+				new PlanPoint<BuhlmannState>(12, 60)));
+	}
+
+	@Test
+	public void testEditMatchesFullPlan() {
+		List<PlanPoint<BuhlmannState>> points = multiLevel();
+		DivePlan<BuhlmannSettings, BuhlmannState> first = algo.calculateDive(plan(settings, points, Gas.AIR, Gas.FIFTY));
+		//planning works on copies of the user points
+		assertThat(points.get(1).time).isEqualTo(25);
+		assertThat(points.get(1).getAlgoState()).isNull();
+
+		PlanPoint<BuhlmannState> edit = new PlanPoint<>(25, 35);
+		first.setUserPoint(2, edit);
+		DivePlan<BuhlmannSettings, BuhlmannState> edited = algo.calculateDive(first);
+
+		points.set(2, edit);
+		DivePlan<BuhlmannSettings, BuhlmannState> full = algo.calculateDive(plan(settings, points, Gas.AIR, Gas.FIFTY));
+		assertThat(edited.getResultPoints().toString()).isEqualTo(full.getResultPoints().toString());
+		assertThat(edited.getGasVols()).isEqualTo(full.getGasVols());
+		assertThat(edited.getFinalState().n2).containsExactly(full.getFinalState().n2);
+
+		//everything up to the second user point is shared with the first plan
+		List<PlanPoint<BuhlmannState>> before = first.getResultPoints();
+		List<PlanPoint<BuhlmannState>> after = edited.getResultPoints();
+		int shared = 0;
+		while (after.get(shared)==before.get(shared)) shared++;
+		assertThat(after.get(shared-1).depth).isEqualTo(30);
+		assertThat(after.get(shared).depth).isEqualTo(25);
+	}
+
+	@Test
+	public void testAddAndRemove() {
+		List<PlanPoint<BuhlmannState>> points = multiLevel();
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(plan(settings, points, Gas.AIR, Gas.FIFTY));
+
+		PlanPoint<BuhlmannState> added = new PlanPoint<>(6, 75);
+		plan.addUserPoint(4, added);
+		plan = algo.calculateDive(plan);
+		points.add(added);
+		assertThat(plan.getResultPoints().toString())
+			.isEqualTo(algo.calculateDive(plan(settings, points, Gas.AIR, Gas.FIFTY)).getResultPoints().toString());
+
+		plan.removeUserPoint(1);
+		plan = algo.calculateDive(plan);
+		points.remove(1);
+		assertThat(plan.getResultPoints().toString())
+			.isEqualTo(algo.calculateDive(plan(settings, points, Gas.AIR, Gas.FIFTY)).getResultPoints().toString());
+
+		//changing anything but the points plans from the start
+		plan.setGases(new ArrayList<>(Arrays.asList(Gas.AIR)));
+		assertThat(algo.calculateDive(plan).getResultPoints().get(1)).isNotSameAs(plan.getResultPoints().get(1));
+	}
+}
@@ -0,0 +1,98 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.LogReplay;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLogReplay {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	/**
+	 * Log a plan as a dive computer would - a sample a second, switching gas where the plan does
+	 */
+	private LogReplay<BuhlmannSettings, BuhlmannState> replay(DivePlan<BuhlmannSettings, BuhlmannState> plan) {
+		List<PlanPoint<BuhlmannState>> points = plan.getResultPoints();
+		LogReplay<BuhlmannSettings, BuhlmannState> replay =
+				new LogReplay<>(algo, settings, plan.getGases(), points.get(0).getGas());
+		for (int i=1;i<points.size();i++) {
+			PlanPoint<BuhlmannState> last = points.get(i-1);
+			PlanPoint<BuhlmannState> next = points.get(i);
+			replay.setGas(last.getGas());
+			double seconds = Math.round((next.time-last.time)*60);
+			for (int s=1;s<=seconds;s++) {
+				double fraction = s/seconds;
+				replay.sample(last.time+(next.time-last.time)*fraction, last.depth+(next.depth-last.depth)*fraction);
+			}
+		}
+		return replay;
+	}
+
+	@Test
+	public void testReplayMatchesPlan() {
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(plan(settings, new PlanPoint<>(18, 20), Gas.AIR));
+		LogReplay<BuhlmannSettings, BuhlmannState> replay = replay(plan);
+		assertThat(replay.getSamples()).isGreaterThan(20*60);
+		assertThat(replay.getMaxDepth()).isEqualTo(18);
+		assertThat(replay.getMaxCeiling()).isEqualTo(0);
+
+		BuhlmannState end = plan.getFinalState();
+		for (int i=0;i<ZHL16C.COMPARTMENTS;i++) {
+			assertThat(replay.getState().n2[i]).isCloseTo(end.n2[i], within(1e-9));
+		}
+		assertThat(replay.getGasUsed().get(Gas.AIR)).isCloseTo(plan.getGasVols().get(Gas.AIR), within(1e-6));
+		List<PlanPoint<BuhlmannState>> points = plan.getResultPoints();
+		assertThat(replay.getOTU()).isCloseTo(points.get(points.size()-1).getOTU(), within(1e-3));
+		assertThat(replay.getCNS()).isCloseTo(points.get(points.size()-1).getCNS(), within(1e-3));
+	}
+
+	@Test
+	public void testDecoDive() {
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(plan(settings, new PlanPoint<>(40, 25), Gas.AIR, Gas.FIFTY));
+		LogReplay<BuhlmannSettings, BuhlmannState> replay = replay(plan);
+		assertThat(replay.getMaxCeiling()).isGreaterThan(0);
+		assertThat(replay.getMaxCeilingTime()).isBetween(20.0, 30.0);
+		assertThat(replay.getState().isDeco()).isTrue();
+		//followed the plan's stops so it can surface
+		assertThat(replay.getState().ceiling(settings.gfHigh)).isLessThanOrEqualTo(0);
+		assertThat(replay.getGasUsed().get(Gas.FIFTY)).isGreaterThan(0);
+	}
+
+	@Test
+	public void testSeedsRepetitiveDive() {
+		DivePlan<BuhlmannSettings, BuhlmannState> first = algo.calculateDive(plan(settings, new PlanPoint<>(30, 25), Gas.AIR));
+		DivePlan<BuhlmannSettings, BuhlmannState> logged = replay(first).toLastPlan();
+		assertThat(logged.getResultPoints()).hasSize(1);
+
+		DivePlan<BuhlmannSettings, BuhlmannState> afterPlan = plan(settings, new PlanPoint<>(30, 30), Gas.AIR);
+		afterPlan.setLastPlan(first);
+		afterPlan.setSurfaceInterval(60);
+		List<PlanPoint<BuhlmannState>> planned = algo.calculateDive(afterPlan).getResultPoints();
+		afterPlan.setLastPlan(logged);
+		List<PlanPoint<BuhlmannState>> afterLog = algo.calculateDive(afterPlan).getResultPoints();
+		assertThat(afterLog.toString()).isEqualTo(planned.toString());
+
+		//and a replay of the next dive
+		LogReplay<BuhlmannSettings, BuhlmannState> second =
+				new LogReplay<>(algo, settings, Arrays.asList(Gas.AIR), Gas.AIR, logged, 60);
+		assertThat(second.getState().n2).containsExactly(afterLog.get(0).getAlgoState().n2);
+		assertThat(second.getCNS()).isEqualTo(afterLog.get(0).getCNS());
+	}
+}
@@ -0,0 +1,91 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.Laws;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestNoDecoLimit {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	/**
+	 * @return the state of a fresh diver at the surface
+	 */
+	private BuhlmannState surface() {
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = plan(settings, new PlanPoint<>(5, 1), Gas.AIR);
+		BuhlmannState start = algo.calculateDive(plan).getResultPoints().get(0).getAlgoState();
+		return new BuhlmannState(start);
+	}
+
+	private BuhlmannState stay(BuhlmannState from, double depth, Gas gas, double time) {
+		BuhlmannState state = new BuhlmannState(from);
+		double insp = depth/BuhlmannAlgo.UNITS_FACTOR+from.surfacePressure-BuhlmannAlgo.WATER_VAP_BAR;
+		for (int i=0;i<ZHL16C.COMPARTMENTS;i++) {
+			state.n2[i] = Laws.haldane(from.n2[i], insp*gas.getPercent(GAS.N2), ZHL16C.N2_K[i], time);
+			state.he[i] = Laws.haldane(from.he[i], insp*gas.getPercent(GAS.HE), ZHL16C.HE_K[i], time);
+		}
+		return state;
+	}
+
+	private void assertLimit(BuhlmannState state, double depth, Gas gas) {
+		double ndl = state.noDecoLimit(depth, gas, settings.gfHigh);
+		assertThat(ndl).isGreaterThan(1).isLessThan(1000);
+		assertThat(stay(state, depth, gas, ndl-0.01).ceiling(settings.gfHigh)).isLessThanOrEqualTo(0);
+		assertThat(stay(state, depth, gas, ndl+0.01).ceiling(settings.gfHigh)).isGreaterThan(0);
+	}
+
+	@Test
+	public void testAirLimit() {
+		BuhlmannState state = surface();
+		assertLimit(state, 30, Gas.AIR);
+		assertThat(state.noDecoLimit(40, Gas.AIR, settings.gfHigh))
+			.isLessThan(state.noDecoLimit(30, Gas.AIR, settings.gfHigh));
+		//shallow enough to never need a stop
+		assertThat(state.noDecoLimit(3, Gas.AIR, settings.gfHigh)).isEqualTo(Double.POSITIVE_INFINITY);
+		//after the limit there is none left
+		double ndl = state.noDecoLimit(30, Gas.AIR, settings.gfHigh);
+		assertThat(stay(state, 30, Gas.AIR, ndl+1).noDecoLimit(30, Gas.AIR, settings.gfHigh)).isEqualTo(0);
+	}
+
+	@Test
+	public void testTrimixLimit() {
+		Gas trimix = new Gas(21, 35);
+		assertLimit(surface(), 40, trimix);
+		//helium already loaded and breathing air
+		assertLimit(stay(surface(), 30, trimix, 3), 15, Gas.AIR);
+	}
+
+	@Test
+	public void testTimeToSurfaceMatchesPlan() {
+		for (double[] bottom:new double[][]{{40, 25}, {30, 40}, {18, 20}, {50, 20}}) {
+			DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(
+					plan(settings, new PlanPoint<>(bottom[0], bottom[1]), Gas.AIR, Gas.FIFTY));
+			List<PlanPoint<BuhlmannState>> points = plan.getResultPoints();
+			PlanPoint<BuhlmannState> leave = points.get(2);
+			assertThat(leave.isUserPoint()).isTrue();
+			double runtime = points.get(points.size()-1).time;
+			//the same stops as the plan to the bit
+			assertThat(algo.timeToSurface(plan, leave)).isEqualTo(runtime-leave.time);
+			//the scratch states are reused and the point's state is left alone
+			double[] n2 = leave.getAlgoState().n2.clone();
+			assertThat(algo.timeToSurface(plan, leave)).isEqualTo(runtime-leave.time);
+			assertThat(leave.getAlgoState().n2).isEqualTo(n2);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelPlanning {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Before
+	public void setUp() throws Exception {
+		//one algorithm instance shared by every thread
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	private List<DivePlan<BuhlmannSettings, BuhlmannState>> variants() {
+		List<DivePlan<BuhlmannSettings, BuhlmannState>> plans = new ArrayList<>();
+		for (int depth=30;depth<=90;depth+=6) {
+			for (int time=10;time<=40;time+=5) {
+				plans.add(plan(settings, new PlanPoint<>(depth, time), new Gas(15, 55), new Gas(21, 35), Gas.FIFTY));
+			}
+		}
+		return plans;
+	}
+
+	private static List<String> describe(List<DivePlan<BuhlmannSettings, BuhlmannState>> plans) {
+		return plans.stream().map(p->p.getResultPoints().toString()).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSameAsSequential() {
+		List<DivePlan<BuhlmannSettings, BuhlmannState>> sequential = new ArrayList<>();
+		for (DivePlan<BuhlmannSettings, BuhlmannState> plan:variants()) {
+			sequential.add(algo.calculateDive(plan));
+		}
+
+		List<DivePlan<BuhlmannSettings, BuhlmannState>> parallel = algo.calculateDives(variants());
+		assertThat(describe(parallel)).isEqualTo(describe(sequential));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertThat(describe(algo.calculateDives(variants(), pool))).isEqualTo(describe(sequential));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testStreamKeepsOrder() {
+		List<DivePlan<BuhlmannSettings, BuhlmannState>> plans = variants();
+		List<Double> bottomDepths = plans.stream().map(p->p.getUserPoints().get(0).depth).collect(Collectors.toList());
+
+		List<Double> resultDepths = new ArrayList<>();
+		algo.calculateDives(plans.stream()).forEachOrdered(p->resultDepths.add(
+				p.getResultPoints().stream().mapToDouble(PlanPoint::getDepth).max().getAsDouble()));
+		assertThat(resultDepths).isEqualTo(bottomDepths);
+	}
+}
@@ -0,0 +1,100 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.common.PlanPoint;
+import org.junit.Test;
+
+public class TestPlanMetrics {
+
+	static class CountingMetrics implements PlanMetrics {
+		final long[] times = new long[Phase.values().length];
+		final long[] calls = new long[Phase.values().length];
+		final int[] inserted = new int[Inserted.values().length];
+		int resultPoints;
+		boolean enabled = true;
+
+		@Override
+		public void time(Phase phase, long nanos) {
+			times[phase.ordinal()]+=nanos;
+			calls[phase.ordinal()]++;
+		}
+
+		@Override
+		public void inserted(Inserted point, int count) {
+			inserted[point.ordinal()]+=count;
+		}
+
+		@Override
+		public void resultPoints(int count) {
+			resultPoints = count;
+		}
+
+		@Override
+		public boolean enabled() {
+			return enabled;
+		}
+	}
+
+	private DivePlan<BuhlmannSettings, BuhlmannState> decoDive() {
+		return plan(new BuhlmannSettings(), new PlanPoint<>(40, 25), Gas.AIR, Gas.FIFTY);
+	}
+
+	@Test
+	public void testDecoDive() {
+		BuhlmannAlgo algo = new BuhlmannAlgo();
+		CountingMetrics metrics = new CountingMetrics();
+		algo.setMetrics(metrics);
+
+		List<PlanPoint<BuhlmannState>> points = algo.calculateDive(decoDive()).getResultPoints();
+
+		assertThat(metrics.resultPoints).isEqualTo(points.size());
+		//every phase the plan went through is given once as the plan's total
+		for (PlanMetrics.Phase phase:PlanMetrics.Phase.values()) {
+			assertThat(metrics.calls[phase.ordinal()]).as(phase.name()).isEqualTo(1);
+		}
+		assertThat(metrics.times[PlanMetrics.Phase.PLAN.ordinal()])
+			.isLessThanOrEqualTo(metrics.times[PlanMetrics.Phase.CALCULATE.ordinal()]);
+		assertThat(metrics.times[PlanMetrics.Phase.TRACK_GAS.ordinal()])
+			.isLessThanOrEqualTo(metrics.times[PlanMetrics.Phase.PLAN.ordinal()]);
+
+		long stops = points.stream().filter(p->p.depth>0 && p.getAlgoState().isDeco()).map(p->p.depth).distinct().count();
+		assertThat(metrics.inserted[PlanMetrics.Inserted.STOP.ordinal()]).isEqualTo((int)stops);
+		assertThat(metrics.inserted[PlanMetrics.Inserted.SWITCH.ordinal()]).isEqualTo(1);
+		assertThat(metrics.inserted[PlanMetrics.Inserted.DESCENT.ordinal()]).isEqualTo(1);
+	}
+
+	@Test
+	public void testRepetitiveDive() {
+		BuhlmannAlgo algo = new BuhlmannAlgo();
+		CountingMetrics metrics = new CountingMetrics();
+		algo.setMetrics(metrics);
+
+		//the last dive is calculated first and its totals are its own
+		DivePlan<BuhlmannSettings, BuhlmannState> second = decoDive();
+		second.setLastPlan(decoDive());
+		second.setSurfaceInterval(60);
+		algo.calculateDive(second);
+		assertThat(metrics.calls[PlanMetrics.Phase.CALCULATE.ordinal()]).isEqualTo(2);
+		assertThat(metrics.calls[PlanMetrics.Phase.TRACK_GAS.ordinal()]).isEqualTo(2);
+		assertThat(metrics.inserted[PlanMetrics.Inserted.SWITCH.ordinal()]).isEqualTo(2);
+	}
+
+	@Test
+	public void testDisabled() {
+		BuhlmannAlgo algo = new BuhlmannAlgo();
+		CountingMetrics metrics = new CountingMetrics();
+		metrics.enabled = false;
+		algo.setMetrics(metrics);
+		algo.calculateDive(decoDive());
+		assertThat(metrics.calls).containsOnly(0);
+		assertThat(metrics.inserted).containsOnly(0);
+		assertThat(metrics.resultPoints).isEqualTo(0);
+	}
+}
@@ -0,0 +1,94 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.PlanTable;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPlanTable {
+
+	private BuhlmannAlgo algo;
+	private DivePlan<BuhlmannSettings, BuhlmannState> plan;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		plan = algo.calculateDive(plan(new BuhlmannSettings(), new PlanPoint<>(45, 25), Gas.AIR, Gas.FIFTY));
+	}
+
+	@Test
+	public void testRowsMatchPoints() {
+		List<PlanPoint<BuhlmannState>> points = new ArrayList<>(plan.getResultPoints());
+		PlanTable<BuhlmannState> table = plan.compact(algo.getStateCodec());
+
+		assertThat(table.size()).isEqualTo(points.size());
+		assertThat(plan.getResultPoints()).hasSize(points.size());
+		assertThat(table.getGases()).containsExactly(Gas.AIR, Gas.FIFTY);
+		for (int i=0;i<points.size();i++) {
+			PlanPoint<BuhlmannState> p = points.get(i);
+			PlanPoint<BuhlmannState> view = plan.getResultPoints().get(i);
+			assertThat(table.getDepth(i)).isEqualTo(p.depth);
+			assertThat(table.getGasOrdinal(i)).isEqualTo(table.getGases().indexOf(p.gas));
+			assertThat(view.depth).isEqualTo(p.depth);
+			assertThat(view.time).isEqualTo(p.time);
+			assertThat(view.duration).isEqualTo(p.duration);
+			assertThat(view.gas).isSameAs(p.gas);
+			assertThat(view.isUserPoint()).isEqualTo(p.isUserPoint());
+			assertThat(view.isDurationPoint()).isEqualTo(p.isDurationPoint());
+			assertThat(view.gasUsed).isEqualTo(p.gasUsed);
+			BuhlmannState state = view.getAlgoState();
+			assertThat(state.n2).containsExactly(p.getAlgoState().n2);
+			assertThat(state.he).containsExactly(p.getAlgoState().he);
+			assertThat(state.getFirstStop()).isEqualTo(p.getAlgoState().getFirstStop());
+			assertThat(state.ceiling(0.5)).isEqualTo(p.getAlgoState().ceiling(0.5));
+		}
+	}
+
+	@Test
+	public void testWithoutStates() {
+		PlanTable<BuhlmannState> table = PlanTable.of(plan.getResultPoints(), null);
+		assertThat(table.hasStates()).isFalse();
+		assertThat(table.getState(1)).isNull();
+		assertThat(table.asList()).extracting(p->p.getAlgoState()).containsOnly((BuhlmannState)null);
+		int fifty = table.getGases().indexOf(Gas.FIFTY);
+		int last = table.size()-1;
+		assertThat(table.getGasUsed(last, fifty)).isEqualTo(plan.getGasVols().get(Gas.FIFTY));
+	}
+
+	@Test
+	public void testCompactForResume() {
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(new BuhlmannSettings(), Arrays.asList(new PlanPoint<>(40, 15),
+				new PlanPoint<>(30, 25), new PlanPoint<>(20, 40)), Gas.AIR, Gas.FIFTY);
+		DivePlan<BuhlmannSettings, BuhlmannState> compacted = algo.calculateDive(userPlan);
+		String points = compacted.getResultPoints().toString();
+		PlanTable<BuhlmannState> table = compacted.compactForResume(algo.getStateCodec());
+
+		//only the checkpoints and the final state are kept
+		assertThat(table.hasStates()).isFalse();
+		int kept = 0;
+		for (int i=0;i<table.size();i++) {
+			if (table.hasState(i)) kept++;
+		}
+		assertThat(kept).isLessThanOrEqualTo(userPlan.getUserPoints().size()+2).isLessThan(table.size()/2);
+		assertThat(table.getState(table.size()-1).n2).containsExactly(compacted.getFinalState().n2);
+		assertThat(compacted.getResultPoints().toString()).isEqualTo(points);
+
+		//still resumes from the edit
+		PlanPoint<BuhlmannState> edit = new PlanPoint<>(25, 35);
+		compacted.setUserPoint(2, edit);
+		DivePlan<BuhlmannSettings, BuhlmannState> edited = algo.calculateDive(compacted);
+		userPlan.getUserPoints().set(2, edit);
+		DivePlan<BuhlmannSettings, BuhlmannState> full = algo.calculateDive(userPlan);
+		assertThat(edited.getResultPoints().toString()).isEqualTo(full.getResultPoints().toString());
+		assertThat(edited.getFinalState().n2).containsExactly(full.getFinalState().n2);
+	}
+}
@@ -0,0 +1,149 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanMetrics.Phase;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.ProfileSimplifier;
+import org.forwoods.deco.common.ProfileSimplifier.Simplification;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProfileSimplifier {
+
+	private BuhlmannAlgo algo;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+	}
+
+	/**
+	 * A slow drift from 30m up to 20m logged every 6 seconds with a few cm of noise
+	 */
+	private List<PlanPoint<BuhlmannState>> dense() {
+		List<PlanPoint<BuhlmannState>> points = new ArrayList<>();
+		points.add(new PlanPoint<>(30, 2));
+		for (int i=1;i<=300;i++) {
+			double time = 2+i/10d;
+			points.add(new PlanPoint<>(30-i/30d+0.03*Math.sin(i), time));
+		}
+		return points;
+	}
+
+	@Test
+	public void testDenseProfile() {
+		List<PlanPoint<BuhlmannState>> points = dense();
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(new BuhlmannSettings(), points, Gas.AIR, Gas.FIFTY);
+		Simplification<BuhlmannSettings, BuhlmannState> simplified = ProfileSimplifier.simplify(algo, userPlan, 0.1);
+		List<PlanPoint<BuhlmannState>> kept = simplified.getPlan().getUserPoints();
+		assertThat(simplified.getRemoved()).isEqualTo(points.size()-kept.size());
+		assertThat(kept.size()).isLessThan(10);
+		//the original is left alone
+		assertThat(userPlan.getUserPoints()).hasSize(301);
+		assertThat(kept.get(0).depth).isEqualTo(points.get(0).depth);
+		assertThat(kept.get(kept.size()-1).time).isEqualTo(points.get(300).time);
+
+		assertThat(simplified.getMaxLoadingError()).isGreaterThan(0).isLessThan(0.01);
+		List<PlanPoint<BuhlmannState>> full = algo.calculateDive(userPlan).getResultPoints();
+		List<PlanPoint<BuhlmannState>> quick = simplified.getPlan().getResultPoints();
+		assertThat(quick.get(quick.size()-1).time).isCloseTo(full.get(full.size()-1).time, within(1.0));
+
+		//a bigger tolerance drops more and loses more
+		Simplification<BuhlmannSettings, BuhlmannState> coarse = ProfileSimplifier.simplify(algo, userPlan, 1);
+		assertThat(coarse.getRemoved()).isGreaterThanOrEqualTo(simplified.getRemoved());
+		assertThat(coarse.getMaxLoadingError()).isGreaterThanOrEqualTo(simplified.getMaxLoadingError());
+	}
+
+	@Test
+	public void testOnlyPlansTheKeptPoints() {
+		TestPlanMetrics.CountingMetrics metrics = new TestPlanMetrics.CountingMetrics();
+		algo.setMetrics(metrics);
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(new BuhlmannSettings(), dense(), Gas.AIR, Gas.FIFTY);
+		Simplification<BuhlmannSettings, BuhlmannState> simplified = ProfileSimplifier.simplify(algo, userPlan, 0.1);
+		//the simplified plan comes back calculated and the original is only replayed
+		assertThat(metrics.calls[Phase.CALCULATE.ordinal()]).isEqualTo(1);
+		assertThat(metrics.resultPoints).isEqualTo(simplified.getPlan().getResultPoints().size());
+		int simplifiedSteps = metrics.resultPoints;
+
+		algo.calculateDive(userPlan);
+		assertThat(metrics.calls[Phase.CALCULATE.ordinal()]).isEqualTo(2);
+		assertThat(simplifiedSteps*10).isLessThan(metrics.resultPoints);
+	}
+
+	/**
+	 * A slow drift from 10m down to 30m over 30 minutes logged every 6 seconds
+	 */
+	private List<PlanPoint<BuhlmannState>> slowDescent() {
+		List<PlanPoint<BuhlmannState>> points = new ArrayList<>();
+		points.add(new PlanPoint<>(10, 2));
+		for (int i=1;i<=300;i++) {
+			points.add(new PlanPoint<>(10+i/15d, 2+i/10d));
+		}
+		return points;
+	}
+
+	@Test
+	public void testSlowDescent() {
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = plan(new BuhlmannSettings(), slowDescent(), Gas.AIR, Gas.FIFTY);
+		Simplification<BuhlmannSettings, BuhlmannState> simplified = ProfileSimplifier.simplify(algo, userPlan, 0.1);
+		//the planner would fly a line between the ends as a quick descent and a long stay at 30m
+		//so the drift keeps its points
+		assertThat(simplified.getPlan().getUserPoints().size()).isGreaterThan(100);
+
+		List<PlanPoint<BuhlmannState>> full = algo.calculateDive(userPlan).getResultPoints();
+		List<PlanPoint<BuhlmannState>> quick = simplified.getPlan().getResultPoints();
+		//the reported error covers the difference where the profiles reach the bottom
+		double bottomError = algo.loadingDifference(bottom(full).getAlgoState(), bottom(quick).getAlgoState());
+		assertThat(simplified.getMaxLoadingError()).isLessThan(0.05).isGreaterThanOrEqualTo(bottomError);
+		assertThat(bottom(quick).time).isCloseTo(bottom(full).time, within(0.5));
+		assertThat(quick.get(quick.size()-1).time).isCloseTo(full.get(full.size()-1).time, within(1.0));
+	}
+
+	/**
+	 * @return the last point at 30m
+	 */
+	private PlanPoint<BuhlmannState> bottom(List<PlanPoint<BuhlmannState>> points) {
+		int i = points.size()-1;
+		while (points.get(i).depth!=30) {
+			i--;
+		}
+		return points.get(i);
+	}
+
+	@Test
+	public void testKeepsAnchors() {
+		PlanPoint<BuhlmannState> deepest = new PlanPoint<>(40.05, 10);
+		PlanPoint<BuhlmannState> hold = new PlanPoint<>(30, 5, true);
+		PlanPoint<BuhlmannState> switchPoint = new PlanPoint<>(21, 30);
+		switchPoint.setGas(Gas.FIFTY);
+		PlanPoint<BuhlmannState> turn = new PlanPoint<>(19.95, 33);
+		List<PlanPoint<BuhlmannState>> points = new ArrayList<>(Arrays.asList(
+				new PlanPoint<BuhlmannState>(40, 5),
+				deepest,
+				new PlanPoint<BuhlmannState>(40, 15),
+				hold,
+				new PlanPoint<BuhlmannState>(25, 25),
+				switchPoint,
+				new PlanPoint<BuhlmannState>(20.5, 31),
+				turn,
+				new PlanPoint<BuhlmannState>(20, 34),
+				new PlanPoint<BuhlmannState>(20, 40)));
+		Simplification<BuhlmannSettings, BuhlmannState> simplified = ProfileSimplifier.simplify(algo, plan(new BuhlmannSettings(), points, Gas.AIR, Gas.FIFTY), 0.5);
+		assertThat(simplified.getPlan().getUserPoints()).extracting(p->p.toString())
+			.contains(deepest.toString(), hold.toString(), switchPoint.toString(), turn.toString())
+			//well off the line to the duration point
+			.contains(points.get(2).toString())
+			.doesNotContain(points.get(6).toString());
+		assertThat(simplified.getPlan().getUserPoints()).extracting(p->p.getGas()).contains(Gas.FIFTY);
+		assertThat(simplified.getRemoved()).isGreaterThan(0);
+	}
+}
@@ -0,0 +1,72 @@
+package org.forwoods.deco.buhlmann;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.forwoods.deco.buhlmann.Plans.plan;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.ScheduleTable;
+import org.forwoods.deco.common.ScheduleTable.Cell;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestScheduleTable {
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+	private List<Gas> gases;
+
+	@Before
+	public void setUp() throws Exception {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+		gases = Arrays.asList(Gas.AIR, Gas.FIFTY);
+	}
+
+	private DivePlan<BuhlmannSettings, BuhlmannState> single(double depth, double bottomTime) {
+		return algo.calculateDive(plan(settings, new PlanPoint<>(depth, bottomTime), gases.toArray(new Gas[gases.size()])));
+	}
+
+	@Test
+	public void testCellsMatchSinglePlans() {
+		ScheduleTable<BuhlmannState> table = ScheduleTable.generate(algo, settings, gases,
+				new double[]{40, 20, 30}, new double[]{25, 15, 20, 30});
+		assertThat(table.getDepths()).containsExactly(20, 30, 40);
+		assertThat(table.getBottomTimes()).containsExactly(15, 20, 25, 30);
+
+		for (int d=0;d<3;d++) {
+			for (int t=0;t<4;t++) {
+				Cell<BuhlmannState> cell = table.get(d, t);
+				DivePlan<BuhlmannSettings, BuhlmannState> full = single(table.getDepths()[d], table.getBottomTimes()[t]);
+				List<PlanPoint<BuhlmannState>> points = full.getResultPoints();
+				assertThat(cell.getRuntime()).isEqualTo(points.get(points.size()-1).time);
+				assertThat(cell.getAscent().get(0).time).isEqualTo(cell.getBottomTime());
+				for (Gas g:full.getGasVols().keySet()) {
+					assertThat(cell.getGasUsed().get(g)).isCloseTo(full.getGasVols().get(g), within(1e-6));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStops() {
+		ScheduleTable<BuhlmannState> table = ScheduleTable.generate(algo, settings, gases,
+				new double[]{40}, new double[]{30});
+		Cell<BuhlmannState> cell = table.get(0, 0);
+		Map<Double, Double> stops = cell.getStops();
+		assertThat(stops).isNotEmpty();
+		double deepest = Double.MAX_VALUE;
+		for (double depth:stops.keySet()) {
+			assertThat(depth).isLessThan(deepest);
+			deepest = depth;
+		}
+		double stopTime = stops.values().stream().mapToDouble(Double::doubleValue).sum();
+		assertThat(stopTime).isLessThan(cell.getTimeToSurface());
+	}
+}
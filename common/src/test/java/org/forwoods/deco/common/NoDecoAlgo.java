@@ -1,7 +1,5 @@
 package org.forwoods.deco.common;
 
-import java.util.List;
-
 /**
  * This algo knows that decompression is dangerous
  * and therefore never makes you do any
@@ -18,7 +16,13 @@ public class NoDecoAlgo extends DecoAlgorithm<NoDecoSettings, NoDecoState> {
 	}
 
 	@Override
-	protected void decendingSegment(List<PlanPoint<NoDecoState>> resultPoints, int i, PlanPoint<NoDecoState> last,
+	protected void surfaceInterval(NoDecoSettings settings, NoDecoState lastState, double interval,
+			PlanPoint<NoDecoState> start) {
+		start.algoState = new NoDecoState();
+	}
+
+	@Override
+	protected void decendingSegment(PlanPoint<NoDecoState> last,
 			PlanPoint<NoDecoState> next) {
 		next.algoState = last.algoState;
 	}
@@ -39,39 +43,56 @@ public class NoDecoAlgo extends DecoAlgorithm<NoDecoSettings, NoDecoState> {
 	}
 
 	@Override
-	protected void ascending(DivePlan<NoDecoSettings, NoDecoState> divePlan, PlanPoint<NoDecoState> next,
-			PlanPoint<NoDecoState> last, int pos) {
+	protected void ascending(DivePlan<NoDecoSettings, NoDecoState> divePlan, PlanBuilder<NoDecoState> builder,
+			PlanPoint<NoDecoState> next, PlanPoint<NoDecoState> last) {
 		NoDecoSettings algoSettings = divePlan.getAlgoSettings();
 		if (last.depth>10 && next.depth<6) {
 			//woah there - you need to do a safety stop
 			//otherwise it isn't safe
-			List<PlanPoint<NoDecoState>> resultPoints = divePlan.getResultPoints();
 			
 			double ascentDist = last.depth - 6;
 			double ascentTime = ascentDist / algoSettings.ascentRate; 
 			PlanPoint<NoDecoState> stopStart = new PlanPoint<>(6, last.time + ascentTime);
 			stopStart.gas = last.gas;
 			stopStart.algoState = last.algoState;
-			resultPoints.add(pos,stopStart);
 			trackGasUsed(last, stopStart, algoSettings);
+			builder.emit(stopStart);
 			
 			Gas best = Gas.pickBest(6, algoSettings, divePlan.getGases());
 			PlanPoint<NoDecoState> stopStop = new PlanPoint<>(6,3,true);
 			stopStop.time = last.time + ascentTime + 3;
 			stopStop.gas = best;
-			resultPoints.add(pos+1, stopStop);
 			
 			next.gas = best;
 			next.time = stopStop.time + 6/algoSettings.ascentRate;
+			builder.push(next);
+			builder.push(stopStop);
 			
 		}
 		else {
 			//ascent directly
 			next.gas = last.gas;
 			next.time = last.time +(last.depth-next.depth)/algoSettings.ascentRate;
+			builder.emit(next);
 		}
 	}
 
+	@Override
+	protected void loggedSegment(NoDecoSettings settings, NoDecoState from, NoDecoState to, Gas gas,
+			double fromDepth, double toDepth, double time) {
+		//nothing to load
+	}
+
+	@Override
+	protected double ceiling(NoDecoSettings settings, NoDecoState state) {
+		return 0;
+	}
+
+	@Override
+	protected double loadingDifference(NoDecoState a, NoDecoState b) {
+		return 0;
+	}
+
 	
 
 }
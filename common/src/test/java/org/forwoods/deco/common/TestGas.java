@@ -0,0 +1,24 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forwoods.deco.common.Gas.GAS;
+import org.junit.Test;
+
+public class TestGas {
+
+	@Test
+	public void testStableHash() {
+		Gas trimix = new Gas(18, 45);
+		assertThat(trimix).isEqualTo(new Gas(18, 45));
+		assertThat(trimix.hashCode()).isEqualTo(new Gas(18, 45).hashCode());
+		//the same in every run
+		int expected = 31*(31+Float.floatToIntBits(0.18f))+Float.floatToIntBits(0.45f);
+		assertThat(trimix.hashCode()).isEqualTo(expected);
+		assertThat(Gas.AIR.hashCode()).isNotEqualTo(Gas.FIFTY.hashCode());
+
+		Gas changed = new Gas(21, 0);
+		changed.setPercent(GAS.O2, 0.32f);
+		assertThat(changed.hashCode()).isEqualTo(new Gas(32, 0).hashCode());
+	}
+}
@@ -53,7 +53,39 @@ public class TestGasConsumption {
 		assertThat(resultPoints.get(2).gasUsed.get(Gas.FIFTY)).isEqualTo(fiftyUsedDesc+gasSwitch);
 		assertThat(resultPoints.get(2).gasUsed.get(Gas.AIR)).isEqualTo(gasSwitch);
 	}
+
+	@Test
+	public void testGasVolsView(){
+		List<Gas> gasses = new ArrayList<>();
+		gasses.add(Gas.FIFTY);
+		gasses.add(Gas.AIR);
 		
+		PlanPoint<NoDecoState> bottom = new PlanPoint<>(40, 10);
+		PlanPoint<NoDecoState> up = new PlanPoint<>(40, 20);
+		DivePlan<NoDecoSettings, NoDecoState> plan = new DivePlan<>();
+		NoDecoSettings settings = new NoDecoSettings();
+		plan.algoSettings = settings;
+		plan.userPoints = Arrays.asList(bottom, up);
+		plan.gases = gasses;
+		
+		DivePlan<NoDecoSettings, NoDecoState> outputPlan = algo.calculateDive(plan);
+		
+		List<PlanPoint<NoDecoState>> resultPoints = outputPlan.getResultPoints();
+		GasVolumes start = resultPoints.get(0).gasUsed;
+		GasVolumes end = resultPoints.get(3).gasUsed;
+		assertThat(start).containsOnlyKeys(Gas.FIFTY, Gas.AIR);
+		assertThat(start.get(Gas.AIR)).isEqualTo(0);
+		//equal gases find the same volume
+		assertThat(end.get(new Gas(21, 0))).isEqualTo(end.get(Gas.AIR));
+		assertThat(end.get(Gas.AIR)).isGreaterThan(0);
+		assertThat(end.get(Gas.HUNDRED)).isNull();
+		try {
+			end.put(Gas.AIR, 0.0);
+			fail("gas volumes are read only");
+		}
+		catch (UnsupportedOperationException e) {
+			//expected
+		}
+	}
 		
-
 }
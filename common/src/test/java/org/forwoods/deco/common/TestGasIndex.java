@@ -0,0 +1,60 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestGasIndex {
+
+	private void assertSameAsScan(List<Gas> gases, DiveSettings settings) {
+		GasIndex index = new GasIndex(gases, settings);
+		for (double depth=-3;depth<=160;depth+=0.25) {
+			assertThat(index.pickBest(depth)).as("depth %s", depth).isSameAs(Gas.pickBest(depth, settings, gases));
+		}
+		for (double depth:new double[]{20.999999, 21, 21.000001, 5.9999, 6, 1e9, Double.NaN}) {
+			assertThat(index.pickBest(depth)).as("depth %s", depth).isSameAs(Gas.pickBest(depth, settings, gases));
+		}
+		for (Gas g:gases) {
+			assertThat(index.getMOD(g)).isEqualTo(g.getMOD(settings));
+			assertThat(index.getMinod(g)).isEqualTo(g.getMinod(settings));
+			assertThat(index.isBreathable(g, 21)).isEqualTo(g.isBreathable(21, settings));
+		}
+	}
+
+	@Test
+	public void testMatchesPickBest() {
+		assertSameAsScan(Arrays.asList(Gas.AIR), new DiveSettings());
+		assertSameAsScan(Arrays.asList(Gas.AIR, Gas.FIFTY, Gas.HUNDRED), new DiveSettings());
+		assertSameAsScan(Arrays.asList(new Gas(10, 70), new Gas(18, 45), new Gas(35, 25), Gas.FIFTY, Gas.HUNDRED),
+				new DiveSettings());
+
+		DiveSettings settings = new DiveSettings();
+		settings.ppO2Max = 1.4f;
+		settings.stepSize = 2;
+		assertSameAsScan(Arrays.asList(Gas.HUNDRED, Gas.FIFTY, new Gas(15, 55)), settings);
+	}
+
+	@Test
+	public void testCustomOperatingDepths() {
+		Gas deco = new Gas(50, 0);
+		deco.setMod(22);
+		Gas travel = new Gas(30, 30);
+		travel.setMinod(4);
+		assertSameAsScan(Arrays.asList(travel, deco, Gas.HUNDRED), new DiveSettings());
+	}
+
+	@Test
+	public void testHighestOxygenWins() {
+		//equal O2 the first listed is kept
+		Gas nitrox = new Gas(32, 0);
+		Gas trimix = new Gas(32, 20);
+		GasIndex index = new GasIndex(Arrays.asList(nitrox, Gas.AIR, trimix), new DiveSettings());
+		assertThat(index.pickBest(10)).isSameAs(nitrox);
+		assertThat(index.pickBest(39)).isSameAs(Gas.AIR);
+		index = new GasIndex(Arrays.asList(Gas.AIR, trimix, nitrox), new DiveSettings());
+		assertThat(index.pickBest(10)).isSameAs(trimix);
+	}
+}
@@ -0,0 +1,83 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLaws {
+
+	private double[] k;
+	private double[] initial;
+	private ExpFactorTable table;
+
+	@Before
+	public void setUp() throws Exception {
+		k = new double[16];
+		initial = new double[16];
+		for (int i=0;i<k.length;i++) {
+			k[i] = Math.log(2)/(4+i*40);
+			initial[i] = 0.75+i*0.1;
+		}
+		table = new ExpFactorTable(k, 1, 100);
+	}
+
+	@Test
+	public void testTableLookup() {
+		assertThat(table.get(3)).isNotNull();
+		assertThat(table.get(3)).isSameAs(table.get(3.0));
+		assertThat(table.get(2.5)).isNull();
+		assertThat(table.get(101)).isNull();
+		assertThat(table.get(-1)).isNull();
+
+		double[] scratch = new double[16];
+		assertThat(table.get(2.5, scratch)).isSameAs(scratch);
+		assertThat(table.get(4, scratch)).isSameAs(table.get(4));
+	}
+
+	@Test
+	public void testBatchHaldaneMatchesScalar() {
+		double[] scratch = new double[16];
+		for (double t:new double[]{1, 2.5, 17, 0.3}) {
+			double[] result = new double[16];
+			Laws.haldane(initial, 3.2, table.get(t, scratch), result);
+			for (int i=0;i<k.length;i++) {
+				assertThat(result[i]).isEqualTo(Laws.haldane(initial[i], 3.2, k[i], t));
+			}
+		}
+	}
+
+	@Test
+	public void testBatchSchreinerMatchesScalar() {
+		double[] scratch = new double[16];
+		for (double t:new double[]{1, 2.5, 17, 0.3}) {
+			double[] result = new double[16];
+			Laws.schreiner(4.1, -0.7, t, k, table.get(t, scratch), initial, result);
+			for (int i=0;i<k.length;i++) {
+				assertThat(result[i]).isEqualTo(Laws.schreiner(4.1, -0.7, t, k[i], initial[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testInPlace() {
+		double[] pressures = initial.clone();
+		Laws.haldane(pressures, 3.2, table.get(5), pressures);
+		for (int i=0;i<k.length;i++) {
+			assertThat(pressures[i]).isEqualTo(Laws.haldane(initial[i], 3.2, k[i], 5));
+		}
+	}
+
+	@Test
+	public void testHaldaneTimeInvertsHaldane() {
+		for (int i=0;i<k.length;i++) {
+			double target = Laws.haldane(initial[i], 3.2, k[i], 17.5);
+			assertThat(Laws.haldaneTime(initial[i], 3.2, k[i], target)).isCloseTo(17.5, within(1e-6));
+		}
+		assertThat(Laws.haldaneTime(1, 3.2, k[0], 1)).isEqualTo(0);
+		//off gassing never reaches a higher pressure and on gassing never passes the inspired pressure
+		assertThat(Laws.haldaneTime(1, 0.5, k[0], 1.2)).isEqualTo(Double.POSITIVE_INFINITY);
+		assertThat(Laws.haldaneTime(1, 3.2, k[0], 3.2)).isEqualTo(Double.POSITIVE_INFINITY);
+	}
+}
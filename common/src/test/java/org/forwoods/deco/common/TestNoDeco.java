@@ -223,4 +223,34 @@ public class TestNoDeco {
 		
 	}
 
+	@Test
+	public void testLogReplay() {
+		NoDecoSettings settings = new NoDecoSettings();
+		LogReplay<NoDecoSettings, NoDecoState> replay = new LogReplay<>(algo, settings, Arrays.asList(Gas.AIR), Gas.AIR);
+		replay.sample(2, 20);
+		replay.sample(22, 20);
+		replay.sample(25, 0);
+		assertThat(replay.getMaxDepth()).isEqualTo(20);
+		assertThat(replay.getMaxCeiling()).isEqualTo(0);
+		//20 minutes at 3 bar and the rest averaging 2 bar
+		double bar = DecoAlgorithm.metersToBar(20, settings.atmosphericPressure);
+		double average = DecoAlgorithm.metersToBar(10, settings.atmosphericPressure);
+		assertThat(replay.getGasUsed().get(Gas.AIR)).isEqualTo(settings.bottomSAC*(20*bar+5*average), rounding);
+		assertThat(replay.toLastPlan().getFinalState()).isNotNull();
+	}
+
+	@Test
+	public void testSimplify() {
+		List<PlanPoint<NoDecoState>> points = new ArrayList<>();
+		for (int i=0;i<=10;i++) {
+			points.add(new PlanPoint<>(20, 10+i));
+		}
+		DivePlan<NoDecoSettings, NoDecoState> plan = new DivePlan<>();
+		plan.getGases().add(Gas.AIR);
+		plan.setAlgoSettings(new NoDecoSettings());
+		plan.setUserPoints(points);
+		ProfileSimplifier.Simplification<NoDecoSettings, NoDecoState> simplified = ProfileSimplifier.simplify(algo, plan, 0.5);
+		assertThat(simplified.getPlan().getUserPoints()).hasSize(2);
+		assertThat(simplified.getMaxLoadingError()).isEqualTo(0);
+	}
 }
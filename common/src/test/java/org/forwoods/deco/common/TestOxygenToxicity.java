@@ -0,0 +1,41 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+public class TestOxygenToxicity {
+
+	@Test
+	public void testConstantDepth() {
+		//the NOAA limits are 100%
+		assertThat(OxygenToxicity.cns(1.4, 1.4, 150)).isCloseTo(100, within(1e-6));
+		assertThat(OxygenToxicity.cns(1.6, 1.6, 45)).isCloseTo(100, within(1e-6));
+		assertThat(OxygenToxicity.cns(1.0, 1.0, 30)).isCloseTo(10, within(1e-6));
+		assertThat(OxygenToxicity.cns(0.4, 0.4, 60)).isEqualTo(0);
+
+		//OTU = t*((ppO2-0.5)/0.5)^0.83
+		assertThat(OxygenToxicity.otu(1.0, 1.0, 10)).isCloseTo(10, within(1e-6));
+		assertThat(OxygenToxicity.otu(1.4, 1.4, 20)).isCloseTo(20*Math.pow(0.9/0.5, 5d/6), within(1e-3));
+		assertThat(OxygenToxicity.otu(0.5, 0.5, 60)).isEqualTo(0);
+	}
+
+	@Test
+	public void testRamps() {
+		//the Baker ramp formula
+		double ramp = 3d/11*10/(1.5-0.5)*Math.pow((1.5-0.5)/0.5, 11d/6);
+		assertThat(OxygenToxicity.otu(0.5, 1.5, 10)).isCloseTo(ramp, within(1e-3));
+		assertThat(OxygenToxicity.otu(1.5, 0.5, 10)).isCloseTo(ramp, within(1e-3));
+
+		//a ramp is the sum of its parts
+		double whole = OxygenToxicity.cns(0.8, 1.4, 6);
+		double parts = 0;
+		for (int i=0;i<600;i++) {
+			double pp = 0.8+0.001*(i+0.5);
+			parts += OxygenToxicity.cns(pp, pp, 0.01);
+		}
+		assertThat(whole).isCloseTo(parts, within(1e-3));
+		assertThat(OxygenToxicity.cns(1.0, 1.0, 0)).isEqualTo(0);
+	}
+}
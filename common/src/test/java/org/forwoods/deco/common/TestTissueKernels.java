@@ -0,0 +1,76 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.SplittableRandom;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTissueKernels {
+
+	private TissueKernels scalar;
+	private TissueKernels loaded;
+	private double[] n2K;
+	private double[] heK;
+	private double[] n2;
+	private double[] he;
+
+	@Before
+	public void setUp() throws Exception {
+		scalar = new ScalarTissueKernels();
+		loaded = TissueKernels.load();
+		SplittableRandom random = new SplittableRandom(42);
+		//odd length to exercise the tail of the vector loop
+		n2K = new double[17];
+		heK = new double[17];
+		n2 = new double[17];
+		he = new double[17];
+		for (int i=0;i<n2.length;i++) {
+			n2K[i] = Math.log(2)/(5+i*40);
+			heK[i] = Math.log(2)/(2+i*15);
+			n2[i] = random.nextDouble(0.5, 6);
+			he[i] = random.nextDouble(0, 4);
+		}
+	}
+
+	@Test
+	public void testHaldaneIdentical() {
+		for (double t:new double[]{1, 0.3, 2.5, 60}) {
+			ExpFactorTable n2Table = new ExpFactorTable(n2K, 1, 10);
+			ExpFactorTable heTable = new ExpFactorTable(heK, 1, 10);
+			double[] n2Factors = n2Table.get(t, new double[17]);
+			double[] heFactors = heTable.get(t, new double[17]);
+			double[][] expected = {new double[17], new double[17]};
+			double[][] actual = {new double[17], new double[17]};
+			scalar.haldane(n2, he, 2.4, 1.7, n2Factors, heFactors, expected[0], expected[1]);
+			loaded.haldane(n2, he, 2.4, 1.7, n2Factors, heFactors, actual[0], actual[1]);
+			assertThat(actual[0]).isEqualTo(expected[0]);
+			assertThat(actual[1]).isEqualTo(expected[1]);
+		}
+	}
+
+	@Test
+	public void testSchreinerIdentical() {
+		for (double t:new double[]{1, 0.3, 2.5, 60}) {
+			ExpFactorTable n2Table = new ExpFactorTable(n2K, 1, 10);
+			ExpFactorTable heTable = new ExpFactorTable(heK, 1, 10);
+			double[] n2Factors = n2Table.get(t, new double[17]);
+			double[] heFactors = heTable.get(t, new double[17]);
+			double[][] expected = {new double[17], new double[17]};
+			double[][] actual = {new double[17], new double[17]};
+			scalar.schreiner(3.1, -0.79, 1.2, -0.3, t, n2K, heK, n2Factors, heFactors, n2, he, expected[0], expected[1]);
+			loaded.schreiner(3.1, -0.79, 1.2, -0.3, t, n2K, heK, n2Factors, heFactors, n2, he, actual[0], actual[1]);
+			assertThat(actual[0]).isEqualTo(expected[0]);
+			assertThat(actual[1]).isEqualTo(expected[1]);
+		}
+	}
+
+	@Test
+	public void testExpectedKernels() {
+		//the vector profile runs the tests with the incubator module - see the pom
+		String expected = System.getProperty("deco.expectedKernels", ScalarTissueKernels.class.getSimpleName());
+		assertThat(loaded.getClass().getSimpleName()).isEqualTo(expected);
+		assertThat(Laws.isVectorised()).isEqualTo(!expected.equals(ScalarTissueKernels.class.getSimpleName()));
+	}
+}
@@ -0,0 +1,47 @@
+package org.forwoods.deco.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class TestVolumeHistogram {
+
+	@Test
+	public void testCloseToSorted() {
+		double[] volumes = new SplittableRandom(42).doubles(100000, 500, 3000).toArray();
+		VolumeHistogram histogram = new VolumeHistogram();
+		for (double volume:volumes) {
+			histogram.add(volume);
+		}
+		Arrays.sort(volumes);
+		for (double p:new double[]{1, 50, 95, 99}) {
+			double exact = volumes[(int)Math.ceil(p/100*volumes.length)-1];
+			assertThat(histogram.percentile(p)).isBetween(exact, exact*(1+VolumeHistogram.RESOLUTION));
+		}
+		assertThat(histogram.percentile(0)).isEqualTo(volumes[0]);
+		assertThat(histogram.percentile(100)).isEqualTo(volumes[volumes.length-1]);
+		assertThat(histogram.getTotal()).isEqualTo(volumes.length);
+	}
+
+	@Test
+	public void testAddAll() {
+		VolumeHistogram all = new VolumeHistogram();
+		VolumeHistogram low = new VolumeHistogram();
+		VolumeHistogram high = new VolumeHistogram();
+		for (int i=0;i<1000;i++) {
+			all.add(i);
+			(i<300?low:high).add(i);
+		}
+		high.addAll(low);
+		for (double p=0;p<=100;p+=2.5) {
+			assertThat(high.percentile(p)).isEqualTo(all.percentile(p));
+		}
+		//volumes of 0 are counted but don't need a bin
+		assertThat(all.percentile(0.1)).isEqualTo(0);
+		assertThat(all.percentile(50)).isCloseTo(499, within(499*VolumeHistogram.RESOLUTION));
+	}
+}
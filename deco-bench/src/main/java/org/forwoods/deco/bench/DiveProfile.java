@@ -0,0 +1,53 @@
+package org.forwoods.deco.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.buhlmann.BuhlmannSettings;
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanPoint;
+
+/**
+ * Dive profiles used by the benchmarks, from a simple recreational dive
+ * up to multi-gas trimix dives beyond 100m
+ * @author Tom
+ *
+ */
+public enum DiveProfile {
+
+	RECREATIONAL(new double[][]{{18, 45}}, Gas.AIR),
+	AIR_DECO(new double[][]{{40, 25}}, Gas.AIR, Gas.FIFTY),
+	MULTI_LEVEL(new double[][]{{45, 15}, {30, 30}, {21, 45}}, new Gas(32, 0), Gas.FIFTY, Gas.HUNDRED),
+	TRIMIX_80(new double[][]{{80, 25}}, new Gas(15, 55), new Gas(21, 35), Gas.FIFTY, Gas.HUNDRED),
+	TRIMIX_110(new double[][]{{110, 20}}, new Gas(10, 70), new Gas(18, 45), new Gas(35, 25), Gas.FIFTY, Gas.HUNDRED);
+
+	private final double[][] points;//depth, runtime
+	private final List<Gas> gases;
+
+	private DiveProfile(double[][] points, Gas... gases) {
+		this.points = points;
+		this.gases = Arrays.asList(gases);
+	}
+
+	public List<Gas> getGases() {
+		return gases;
+	}
+
+	/**
+	 * @return a fresh user plan - planning changes the user points so each calculation needs its own
+	 */
+	public DivePlan<BuhlmannSettings, BuhlmannState> plan(BuhlmannSettings settings) {
+		List<PlanPoint<BuhlmannState>> userPoints = new ArrayList<>();
+		for (double[] p:points) {
+			userPoints.add(new PlanPoint<>(p[0], p[1]));
+		}
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		plan.setUserPoints(userPoints);
+		plan.setGases(new ArrayList<>(gases));
+		return plan;
+	}
+}
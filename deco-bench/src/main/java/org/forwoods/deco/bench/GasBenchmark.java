@@ -0,0 +1,78 @@
+package org.forwoods.deco.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forwoods.deco.common.DiveSettings;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.GasIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gas selection - Gas.pickBest, isBreathable and getMOD and the GasIndex equivalents
+ * @author Tom
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GasBenchmark {
+
+	@Param
+	DiveProfile profile;
+
+	@Param({"6", "21", "57"})
+	double depth;
+
+	private DiveSettings settings;
+	private List<Gas> gases;
+	private Gas gas;
+	private GasIndex index;
+
+	@Setup
+	public void setUp() {
+		settings = new DiveSettings();
+		gases = profile.getGases();
+		gas = gases.get(0);
+		index = new GasIndex(gases, settings);
+	}
+
+	@Benchmark
+	public Gas pickBest() {
+		return Gas.pickBest(depth, settings, gases);
+	}
+
+	@Benchmark
+	public boolean isBreathable() {
+		return gas.isBreathable(depth, settings);
+	}
+
+	@Benchmark
+	public int getMOD() {
+		return gas.getMOD(settings);
+	}
+
+	@Benchmark
+	public Gas pickBestIndexed() {
+		return index.pickBest(depth);
+	}
+
+	@Benchmark
+	public boolean isBreathableIndexed() {
+		return index.isBreathable(gas, depth);
+	}
+
+}
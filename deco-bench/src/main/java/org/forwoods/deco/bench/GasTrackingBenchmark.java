@@ -0,0 +1,73 @@
+package org.forwoods.deco.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forwoods.deco.buhlmann.BuhlmannAlgo;
+import org.forwoods.deco.buhlmann.BuhlmannSettings;
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.PlanPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gas consumption tracking for a single segment - DecoAlgorithm.trackGasUsed
+ * The segment is taken from the bottom of a planned dive so the gas volumes
+ * hold every gas of the profile
+ * @author Tom
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GasTrackingBenchmark {
+
+	/**
+	 * exposes the protected gas tracking
+	 */
+	static class TrackingAlgo extends BuhlmannAlgo {
+		void track(PlanPoint<BuhlmannState> last, PlanPoint<BuhlmannState> next, BuhlmannSettings settings) {
+			trackGasUsed(last, next, settings);
+		}
+	}
+
+	@Param
+	DiveProfile profile;
+
+	private TrackingAlgo algo;
+	private BuhlmannSettings settings;
+	private PlanPoint<BuhlmannState> last;
+	private PlanPoint<BuhlmannState> next;
+
+	@Setup
+	public void setUp() {
+		algo = new TrackingAlgo();
+		settings = new BuhlmannSettings();
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(profile.plan(settings));
+		int bottom = 0;
+		for (int i=1;i<plan.getResultPoints().size();i++) {
+			if (plan.getResultPoints().get(i).depth>plan.getResultPoints().get(bottom).depth) bottom = i;
+		}
+		last = plan.getResultPoints().get(bottom);
+		next = plan.getResultPoints().get(bottom+1);
+	}
+
+	@Benchmark
+	public PlanPoint<BuhlmannState> trackGasUsed() {
+		algo.track(last, next, settings);
+		return next;
+	}
+
+}
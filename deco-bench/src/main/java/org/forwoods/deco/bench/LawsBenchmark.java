@@ -0,0 +1,95 @@
+package org.forwoods.deco.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forwoods.deco.common.ExpFactorTable;
+import org.forwoods.deco.common.Laws;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tissue update kernels for all 16 compartments of both inert gases.
+ * Compares the scalar Laws equations with the batch kernels using cached exponential factors.
+ * Run with --add-modules jdk.incubator.vector on jdk 17+ to measure the vectorised kernels
+ * @author Tom
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LawsBenchmark {
+
+	private static final int COMPARTMENTS = 16;
+
+	@Param({"1", "2.5"})
+	double interval;
+
+	private double[] n2K = new double[COMPARTMENTS];
+	private double[] heK = new double[COMPARTMENTS];
+	private double[] n2 = new double[COMPARTMENTS];
+	private double[] he = new double[COMPARTMENTS];
+	private double[] n2Result = new double[COMPARTMENTS];
+	private double[] heResult = new double[COMPARTMENTS];
+	private double[] n2Scratch = new double[COMPARTMENTS];
+	private double[] heScratch = new double[COMPARTMENTS];
+	private ExpFactorTable n2Factors;
+	private ExpFactorTable heFactors;
+
+	@Setup
+	public void setUp() {
+		for (int i=0;i<COMPARTMENTS;i++) {
+			n2K[i] = Math.log(2)/(5+i*40);
+			heK[i] = Math.log(2)/(2+i*15);
+			n2[i] = 0.75+i*0.2;
+			he[i] = i*0.1;
+		}
+		n2Factors = new ExpFactorTable(n2K, 1, 360);
+		heFactors = new ExpFactorTable(heK, 1, 360);
+	}
+
+	@Benchmark
+	public double[] haldaneScalar() {
+		for (int i=0;i<COMPARTMENTS;i++) {
+			n2Result[i] = Laws.haldane(n2[i], 3.1, n2K[i], interval);
+			heResult[i] = Laws.haldane(he[i], 1.2, heK[i], interval);
+		}
+		return n2Result;
+	}
+
+	@Benchmark
+	public double[] haldaneBatch() {
+		Laws.haldane(n2, he, 3.1, 1.2, n2Factors.get(interval, n2Scratch), heFactors.get(interval, heScratch),
+				n2Result, heResult);
+		return n2Result;
+	}
+
+	@Benchmark
+	public double[] schreinerScalar() {
+		for (int i=0;i<COMPARTMENTS;i++) {
+			n2Result[i] = Laws.schreiner(3.1, -0.79, interval, n2K[i], n2[i]);
+			heResult[i] = Laws.schreiner(1.2, -0.3, interval, heK[i], he[i]);
+		}
+		return n2Result;
+	}
+
+	@Benchmark
+	public double[] schreinerBatch() {
+		Laws.schreiner(3.1, -0.79, 1.2, -0.3, interval, n2K, heK,
+				n2Factors.get(interval, n2Scratch), heFactors.get(interval, heScratch),
+				n2, he, n2Result, heResult);
+		return n2Result;
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.forwoods.deco.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forwoods.deco.buhlmann.BuhlmannAlgo;
+import org.forwoods.deco.buhlmann.BuhlmannSettings;
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.DivePlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole plan calculation - DecoAlgorithm.calculateDive
+ * @author Tom
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PlanBenchmark {
+
+	@Param
+	DiveProfile profile;
+
+	private BuhlmannAlgo algo;
+	private BuhlmannSettings settings;
+
+	@Setup
+	public void setUp() {
+		algo = new BuhlmannAlgo();
+		settings = new BuhlmannSettings();
+	}
+
+	@Benchmark
+	public DivePlan<BuhlmannSettings, BuhlmannState> calculateDive() {
+		return algo.calculateDive(profile.plan(settings));
+	}
+
+}
@@ -0,0 +1,102 @@
+package org.forwoods.deco.server;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forwoods.deco.server.DecoServerConfiguration.ExecutionMode;
+import org.forwoods.deco.server.core.AdmissionExecutor;
+import org.forwoods.deco.server.core.DropwizardPlanMetrics;
+import org.forwoods.deco.server.core.PlanBinaryEncoder;
+import org.forwoods.deco.server.core.PlanJsonEncoder;
+import org.forwoods.deco.server.core.PlanService;
+import org.forwoods.deco.server.resources.PlanResource;
+import org.forwoods.deco.server.resources.PlanWriter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.Application;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+/**
+ * @author Tom
+ * Dropwizard application serving dive plans
+ */
+public class DecoServerApplication extends Application<DecoServerConfiguration> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DecoServerApplication.class);
+
+	public static void main(String[] args) throws Exception {
+		new DecoServerApplication().run(args);
+	}
+
+	@Override
+	public String getName() {
+		return "deco-server";
+	}
+
+	@Override
+	public void run(DecoServerConfiguration configuration, Environment environment) throws Exception {
+		ExecutorService planExecutor = planExecutor(configuration, environment);
+		//a calculation is only started if there is room for it - identical and cached plans don't need any
+		AdmissionExecutor admission = new AdmissionExecutor(planExecutor, configuration.maxConcurrentPlans);
+
+		MetricRegistry metrics = environment.metrics();
+		PlanService planService = new PlanService(admission, PlanService.newCache(configuration.planCacheMaxPoints),
+				new DropwizardPlanMetrics(metrics), environment.getValidator());
+		metrics.register(name(PlanService.class, "cache", "hits"), (Gauge<Long>)()->planService.cacheStats().hitCount());
+		metrics.register(name(PlanService.class, "cache", "misses"), (Gauge<Long>)()->planService.cacheStats().missCount());
+		metrics.register(name(PlanService.class, "cache", "hit-rate"), (Gauge<Double>)()->planService.cacheStats().hitRate());
+		metrics.register(name(PlanService.class, "cache", "evictions"), (Gauge<Long>)()->planService.cacheStats().evictionCount());
+		metrics.register(name(PlanService.class, "shared-calculations"), (Gauge<Long>)planService::sharedCalculations);
+		metrics.register(name(PlanService.class, "admitted"), (Gauge<Integer>)admission::getAdmitted);
+		environment.jersey().register(new PlanResource(planService, configuration.planTimeoutSeconds,
+				configuration.retryAfterSeconds));
+		environment.jersey().register(new PlanWriter(
+				new PlanJsonEncoder(environment.getObjectMapper().getFactory()), new PlanBinaryEncoder()));
+	}
+
+	/**
+	 * Plans are calculated off the jetty threads, either on their own bounded pool
+	 * or on a virtual thread each if the JVM has them
+	 */
+	private ExecutorService planExecutor(DecoServerConfiguration configuration, Environment environment) {
+		if (configuration.executionMode==ExecutionMode.VIRTUAL) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+			if (virtual!=null) {
+				environment.lifecycle().manage(new ExecutorServiceManager(virtual, Duration.seconds(5), "plan-virtual"));
+				return virtual;
+			}
+			LOG.warn("Virtual threads need Java 21 - calculating plans on a pool of {} threads", configuration.planThreads);
+		}
+		return environment.lifecycle().executorService("plan-%d")
+				.minThreads(configuration.planThreads)
+				.maxThreads(configuration.planThreads)
+				.workQueue(new ArrayBlockingQueue<>(configuration.planQueueSize))
+				.build();
+	}
+
+	/**
+	 * Found by reflection so the server still builds and runs on older JVMs
+	 * @return an executor starting a virtual thread per task or null if there are no virtual threads
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.forwoods.deco.server;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import io.dropwizard.Configuration;
+
+/**
+ * @author Tom
+ * Configuration of the plan server
+ */
+public class DecoServerConfiguration extends Configuration {
+
+	public enum ExecutionMode {
+		POOLED,//plans are calculated on a fixed pool of planThreads
+		VIRTUAL//a virtual thread per plan - needs java 21, falls back to pooled
+	}
+
+	@NotNull
+	public ExecutionMode executionMode = ExecutionMode.POOLED;
+
+	@Min(1)
+	public int planThreads = Runtime.getRuntime().availableProcessors();//threads calculating plans
+
+	@Min(1)
+	public int planQueueSize = 256;//plans waiting for a thread before requests are turned away
+
+	@Min(1)
+	public int maxConcurrentPlans = 2*Runtime.getRuntime().availableProcessors();//plans admitted at once - the rest get a 429
+
+	@Min(0)
+	public int retryAfterSeconds = 1;//Retry-After sent with a 429
+
+	@Min(1)
+	public int planTimeoutSeconds = 30;//how long a request waits for its plan
+
+	@Min(0)
+	public long planCacheMaxPoints = 1_000_000;//result points of all cached plans - 0 turns the cache off
+
+}
@@ -0,0 +1,41 @@
+package org.forwoods.deco.server.api;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import org.forwoods.deco.common.Gas;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * @author Tom
+ * A gas as sent by the client - whole percentages of oxygen and helium
+ */
+public class GasMix {
+
+	@Min(1) @Max(100)
+	public int o2 = 21;
+
+	@Min(0) @Max(99)
+	public int he;
+
+	public GasMix() {
+	}
+
+	public GasMix(int o2, int he) {
+		this.o2 = o2;
+		this.he = he;
+	}
+
+	@JsonIgnore
+	@AssertTrue(message="o2 and he must not add up to more than 100")
+	public boolean isMix() {
+		return o2+he<=100;
+	}
+
+	public Gas toGas() {
+		return new Gas(o2, he);
+	}
+
+}
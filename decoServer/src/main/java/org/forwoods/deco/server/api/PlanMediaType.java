@@ -0,0 +1,21 @@
+package org.forwoods.deco.server.api;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * @author Tom
+ * Media types plans can be returned as
+ */
+public final class PlanMediaType {
+
+	/**
+	 * compact binary encoding of a plan
+	 * @see org.forwoods.deco.server.core.PlanBinaryEncoder
+	 */
+	public static final String BINARY = "application/x-deco-plan";
+	public static final MediaType BINARY_TYPE = MediaType.valueOf(BINARY);
+
+	private PlanMediaType() {
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.forwoods.deco.server.api;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * @author Tom
+ * A plan to calculate - the settings are optional and default to {@link PlanSettings}
+ */
+public class PlanRequest {
+
+	@NotNull @Size(min=1) @Valid
+	public List<UserPoint> points;
+
+	@NotNull @Size(min=1) @Valid
+	public List<GasMix> gases;
+
+	@Valid
+	public PlanSettings settings;
+
+	//@Valid skips null elements so they would reach the planner
+	@JsonIgnore
+	@AssertTrue(message="points must not contain null")
+	public boolean isPointsPresent() {
+		return points==null || !points.contains(null);
+	}
+
+	@JsonIgnore
+	@AssertTrue(message="gases must not contain null")
+	public boolean isGasesPresent() {
+		return gases==null || !gases.contains(null);
+	}
+
+}
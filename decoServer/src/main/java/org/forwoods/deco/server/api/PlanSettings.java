@@ -0,0 +1,104 @@
+package org.forwoods.deco.server.api;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import org.forwoods.deco.buhlmann.BuhlmannSettings;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * @author Tom
+ * Settings as sent by the client.
+ * The bounds keep requests away from settings the planner can't plan with - e.g. a step size
+ * of 0 never finds the next stop and a rate of 0 never arrives.
+ * The settings are public fields like all settings so the bounds are on getters
+ */
+public class PlanSettings extends BuhlmannSettings {
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("20")
+	public float getAtmosphericPressure() {
+		return atmosphericPressure;
+	}
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("100")
+	public float getBottomSAC() {
+		return bottomSAC;
+	}
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("100")
+	public float getDecoSAC() {
+		return decoSAC;
+	}
+
+	@DecimalMin("1") @DecimalMax("100")
+	public float getDescentRate() {
+		return descentRate;
+	}
+
+	@DecimalMin("1") @DecimalMax("100")
+	public float getAscentRate() {
+		return ascentRate;
+	}
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("3")
+	public float getPpO2Max() {
+		return ppO2Max;
+	}
+
+	@DecimalMin("0")
+	public float getPpO2Min() {
+		return ppO2Min;
+	}
+
+	@DecimalMin("0") @DecimalMax("60")
+	public float getSwitchTime() {
+		return switchTime;
+	}
+
+	@Min(1) @Max(30)
+	public int getStepSize() {
+		return stepSize;
+	}
+
+	@DecimalMin("0") @DecimalMax("60")
+	public float getMinStop() {
+		return minStop;
+	}
+
+	@DecimalMin("0") @DecimalMax("30")
+	public float getLastStopDepth() {
+		return lastStopDepth;
+	}
+
+	@DecimalMin("0") @DecimalMax("60")
+	public float getLastAscentTime() {
+		return lastAscentTime;
+	}
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("1")
+	public float getGfLow() {
+		return gfLow;
+	}
+
+	@DecimalMin(value="0", inclusive=false) @DecimalMax("1")
+	public float getGfHigh() {
+		return gfHigh;
+	}
+
+	@JsonIgnore
+	@AssertTrue(message="ppO2Min must be less than ppO2Max")
+	public boolean isPpO2Range() {
+		return ppO2Min<ppO2Max;
+	}
+
+	@JsonIgnore
+	@AssertTrue(message="gfLow must not be more than gfHigh")
+	public boolean isGradientFactorRange() {
+		return gfLow<=gfHigh;
+	}
+
+}
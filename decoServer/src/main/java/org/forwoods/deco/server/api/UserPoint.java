@@ -0,0 +1,39 @@
+package org.forwoods.deco.server.api;
+
+import javax.validation.constraints.Min;
+
+import org.forwoods.deco.common.AlgoState;
+import org.forwoods.deco.common.PlanPoint;
+
+/**
+ * @author Tom
+ * A point of the user's plan.
+ * Either reach the depth by a runtime or, if a duration is given, stay at the depth for that long
+ */
+public class UserPoint {
+
+	@Min(0)
+	public double depth;//m
+
+	@Min(0)
+	public double time;//runtime in minutes
+
+	@Min(0)
+	public Double duration;//minutes at the depth
+
+	public UserPoint() {
+	}
+
+	public UserPoint(double depth, double time) {
+		this.depth = depth;
+		this.time = time;
+	}
+
+	public <STATE extends AlgoState> PlanPoint<STATE> toPlanPoint() {
+		if (duration!=null) {
+			return new PlanPoint<>(depth, duration, true);
+		}
+		return new PlanPoint<>(depth, time);
+	}
+
+}
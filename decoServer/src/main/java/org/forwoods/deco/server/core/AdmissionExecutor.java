@@ -0,0 +1,57 @@
+package org.forwoods.deco.server.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * @author Tom
+ * Limits the number of tasks running or waiting on another executor.
+ * Tasks over the limit are rejected straight away rather than queued
+ * so clients can be told to come back later while the server is busy.
+ */
+public class AdmissionExecutor implements Executor {
+
+	private final Executor delegate;
+	private final Semaphore permits;
+	private final int limit;
+
+	/**
+	 * @param delegate the executor running the tasks
+	 * @param limit the most tasks admitted at once
+	 */
+	public AdmissionExecutor(Executor delegate, int limit) {
+		this.delegate = delegate;
+		this.limit = limit;
+		permits = new Semaphore(limit);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (!permits.tryAcquire()) {
+			throw new RejectedExecutionException("More than "+limit+" plans being calculated");
+		}
+		try {
+			delegate.execute(()->{
+				try {
+					command.run();
+				}
+				finally {
+					permits.release();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of tasks admitted and not finished
+	 */
+	public int getAdmitted() {
+		return limit-permits.availablePermits();
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.forwoods.deco.server.core;
+
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.PlanTable;
+
+/**
+ * @author Tom
+ * A calculated plan ready to be written to a client
+ */
+public class CalculatedPlan {
+
+	private final PlanTable<BuhlmannState> table;
+	private final boolean states;
+
+	/**
+	 * @param table the plan - shared with the cache so it must not be changed
+	 * @param states whether to write the state of each point
+	 */
+	public CalculatedPlan(PlanTable<BuhlmannState> table, boolean states) {
+		this.table = table;
+		this.states = states;
+	}
+
+	public PlanTable<BuhlmannState> getTable() {
+		return table;
+	}
+
+	/**
+	 * @return whether to write the state of each point
+	 */
+	public boolean writeStates() {
+		return states && table.hasStates();
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.forwoods.deco.server.core;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.forwoods.deco.common.DecoAlgorithm;
+import org.forwoods.deco.common.PlanMetrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+/**
+ * @author Tom
+ * Planning metrics kept in a Dropwizard metric registry - and so shown on the admin port.
+ * The metrics are looked up once and held in arrays indexed by phase, and the timers and histogram
+ * use uniform reservoirs which sample into a fixed array, so recording allocates nothing.
+ * Each plan records its totals once when it is finished so the timers give the time a plan
+ * spends in each phase
+ */
+public class DropwizardPlanMetrics implements PlanMetrics {
+
+	private final Timer[] timers;
+	private final Counter[] inserted;
+	private final Histogram resultPoints;
+
+	public DropwizardPlanMetrics(MetricRegistry registry) {
+		String prefix = name(DecoAlgorithm.class);
+		Phase[] phases = Phase.values();
+		timers = new Timer[phases.length];
+		for (Phase p:phases) {
+			timers[p.ordinal()] = registry.register(name(prefix, "time", metricName(p)), new Timer(new UniformReservoir()));
+		}
+		Inserted[] points = Inserted.values();
+		inserted = new Counter[points.length];
+		for (Inserted p:points) {
+			inserted[p.ordinal()] = registry.counter(name(prefix, "inserted", metricName(p)));
+		}
+		resultPoints = registry.register(name(prefix, "result-points"), new Histogram(new UniformReservoir()));
+	}
+
+	private static String metricName(Enum<?> e) {
+		return e.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+	@Override
+	public void time(Phase phase, long nanos) {
+		timers[phase.ordinal()].update(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void inserted(Inserted point, int count) {
+		inserted[point.ordinal()].inc(count);
+	}
+
+	@Override
+	public void resultPoints(int count) {
+		resultPoints.update(count);
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.forwoods.deco.server.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.PlanTable;
+
+/**
+ * @author Tom
+ * Writes a plan in a compact binary format.
+ * <pre>
+ * byte    version (2)
+ * varint  gas count, then for each gas byte O2 % and byte He %
+ * varint  state width - 0 if states are left out
+ * varint  point count, then for each point
+ *   byte    flags - 1 deco, 2 raw depth, 4 raw time, 8 state follows
+ *   varint  gas - ordinal+1, 0 for none
+ *   depth   raw double or zigzag varint of the change in centimetres from the last non raw depth
+ *   time    raw double or zigzag varint of the change in hundredths of a minute from the last non raw time
+ *   double  OTU up to the point
+ *   double  CNS % up to the point
+ *   state   state width doubles
+ * double  litres used of each gas
+ * </pre>
+ * Plan depths and times are nearly always whole hundredths so most points take 20-22 bytes without states.
+ * Doubles are big endian.
+ */
+public class PlanBinaryEncoder {
+
+	public static final int VERSION = 2;
+
+	static final int DECO = 1;
+	static final int RAW_DEPTH = 2;
+	static final int RAW_TIME = 4;
+	static final int STATE = 8;
+
+	public void write(CalculatedPlan calculated, OutputStream out) throws IOException {
+		PlanTable<BuhlmannState> table = calculated.getTable();
+		List<Gas> gases = table.getGases();
+		int width = calculated.writeStates()?table.getStateWidth():0;
+		double[] state = new double[width];
+
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeByte(VERSION);
+		writeVarint(data, gases.size());
+		for (Gas g:gases) {
+			data.writeByte(Math.round(g.getPercent(GAS.O2)*100));
+			data.writeByte(Math.round(g.getPercent(GAS.HE)*100));
+		}
+		writeVarint(data, width);
+
+		int size = table.size();
+		writeVarint(data, size);
+		long lastDepth = 0;
+		long lastTime = 0;
+		for (int row=0;row<size;row++) {
+			long depth = hundredths(table.getDepth(row));
+			long time = hundredths(table.getTime(row));
+			int flags = 0;
+			if (table.isDeco(row)) flags|=DECO;
+			if (depth==Long.MIN_VALUE) flags|=RAW_DEPTH;
+			if (time==Long.MIN_VALUE) flags|=RAW_TIME;
+			if (width>0) flags|=STATE;
+			data.writeByte(flags);
+			writeVarint(data, table.getGasOrdinal(row)+1);
+			if (depth==Long.MIN_VALUE) {
+				data.writeDouble(table.getDepth(row));
+			}
+			else {
+				writeVarint(data, zigzag(depth-lastDepth));
+				lastDepth = depth;
+			}
+			if (time==Long.MIN_VALUE) {
+				data.writeDouble(table.getTime(row));
+			}
+			else {
+				writeVarint(data, zigzag(time-lastTime));
+				lastTime = time;
+			}
+			data.writeDouble(table.getOTU(row));
+			data.writeDouble(table.getCNS(row));
+			if (width>0) {
+				table.copyState(row, state, 0);
+				for (double d:state) {
+					data.writeDouble(d);
+				}
+			}
+		}
+
+		for (int i=0;i<gases.size();i++) {
+			data.writeDouble(table.getGasUsed(size-1, i));
+		}
+		data.flush();
+	}
+
+	/**
+	 * @return the value in hundredths if that is exact - Long.MIN_VALUE if it isn't
+	 */
+	static long hundredths(double value) {
+		double scaled = Math.rint(value*100);
+		if (Math.abs(scaled)<(1L<<52) && scaled/100==value) {
+			return (long)scaled;
+		}
+		return Long.MIN_VALUE;
+	}
+
+	static long zigzag(long value) {
+		return (value<<1)^(value>>63);
+	}
+
+	static void writeVarint(DataOutputStream data, long value) throws IOException {
+		while ((value&~0x7FL)!=0) {
+			data.writeByte((int)((value&0x7F)|0x80));
+			value>>>=7;
+		}
+		data.writeByte((int)value);
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.forwoods.deco.server.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.PlanTable;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * @author Tom
+ * Writes a plan as JSON straight from its plan table without building a tree or using reflection
+ * <pre>
+ * {"points":[{"depth":40.0,"time":2.0,"gas":"21/0","deco":false,"otu":1.2,"cns":0.5,"state":[...]},...],
+ *  "gasUsed":{"21/0":2331.9,...},"runtime":51.0}
+ * </pre>
+ * state is only written if it was asked for
+ */
+public class PlanJsonEncoder {
+
+	private final JsonFactory factory;
+
+	public PlanJsonEncoder(JsonFactory factory) {
+		this.factory = factory;
+	}
+
+	public void write(CalculatedPlan calculated, OutputStream out) throws IOException {
+		PlanTable<BuhlmannState> table = calculated.getTable();
+		List<Gas> gases = table.getGases();
+		String[] gasNames = new String[gases.size()];
+		for (int i=0;i<gasNames.length;i++) {
+			gasNames[i] = gases.get(i).toString();
+		}
+		double[] state = calculated.writeStates()?new double[table.getStateWidth()]:null;
+		int last = table.size()-1;
+
+		try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+			gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			gen.writeStartObject();
+			gen.writeArrayFieldStart("points");
+			for (int row=0;row<=last;row++) {
+				gen.writeStartObject();
+				gen.writeNumberField("depth", table.getDepth(row));
+				gen.writeNumberField("time", table.getTime(row));
+				gen.writeStringField("gas", String.valueOf(table.getGas(row)));
+				gen.writeBooleanField("deco", table.isDeco(row));
+				gen.writeNumberField("otu", table.getOTU(row));
+				gen.writeNumberField("cns", table.getCNS(row));
+				if (state!=null) {
+					table.copyState(row, state, 0);
+					gen.writeArrayFieldStart("state");
+					for (double d:state) {
+						gen.writeNumber(d);
+					}
+					gen.writeEndArray();
+				}
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+
+			gen.writeObjectFieldStart("gasUsed");
+			for (int i=0;i<gasNames.length;i++) {
+				gen.writeNumberField(gasNames[i], table.getGasUsed(last, i));
+			}
+			gen.writeEndObject();
+			gen.writeNumberField("runtime", table.getTime(last));
+			gen.writeEndObject();
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.forwoods.deco.server.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.forwoods.deco.common.AlgoState;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.DiveSettings;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.PlanPoint;
+
+/**
+ * @author Tom
+ * SHA-256 of everything a plan is calculated from - the user points, the gases in order
+ * and every public field of the settings. Two plans with the same key calculate the same result
+ * so the key can be used to share results between users.
+ */
+public final class PlanKey {
+
+	private static final ConcurrentHashMap<Class<?>, Field[]> SETTINGS_FIELDS = new ConcurrentHashMap<>();
+
+	private final byte[] digest;
+	private final int hash;
+
+	private PlanKey(byte[] digest) {
+		this.digest = digest;
+		//the digest is already well mixed
+		hash = (digest[0]&0xFF)<<24 | (digest[1]&0xFF)<<16 | (digest[2]&0xFF)<<8 | (digest[3]&0xFF);
+	}
+
+	public static PlanKey of(DivePlan<?, ?> plan) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+		try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(NULL, md))) {
+			writeSettings(out, plan.getAlgoSettings());
+			List<Gas> gases = plan.getGases();
+			out.writeInt(gases.size());
+			for (Gas g:gases) {
+				writeGas(out, g);
+			}
+			List<? extends PlanPoint<? extends AlgoState>> points = plan.getUserPoints();
+			out.writeInt(points.size());
+			for (PlanPoint<? extends AlgoState> p:points) {
+				out.writeDouble(p.depth);
+				out.writeDouble(p.time);
+				out.writeDouble(p.duration);
+				out.writeBoolean(p.isDurationPoint());
+				out.writeBoolean(p.isUserPoint());
+				writeGas(out, p.gas);
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Digest streams don't throw", e);
+		}
+		return new PlanKey(md.digest());
+	}
+
+	private static void writeGas(DataOutputStream out, Gas g) throws IOException {
+		if (g==null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		out.writeFloat(g.getPercent(GAS.O2));
+		out.writeFloat(g.getPercent(GAS.HE));
+		//MOD and min OD overrides
+		out.writeInt(g.getMOD(null));
+		out.writeInt(g.getMinod(null));
+	}
+
+	private static void writeSettings(DataOutputStream out, DiveSettings settings) throws IOException {
+		out.writeUTF(settings.getClass().getName());
+		for (Field f:settingsFields(settings.getClass())) {
+			out.writeUTF(f.getName());
+			try {
+				Object value = f.get(settings);
+				out.writeUTF(String.valueOf(value));
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException("Settings fields are public", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the public instance fields of a settings class ordered by name
+	 */
+	private static Field[] settingsFields(Class<?> type) {
+		return SETTINGS_FIELDS.computeIfAbsent(type, t->{
+			List<Field> fields = new ArrayList<>();
+			for (Field f:t.getFields()) {
+				if (!Modifier.isStatic(f.getModifiers())) {
+					fields.add(f);
+				}
+			}
+			fields.sort(Comparator.comparing(Field::getName));
+			return fields.toArray(new Field[fields.size()]);
+		});
+	}
+
+	private static final OutputStream NULL = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return Arrays.equals(digest, ((PlanKey)obj).digest);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (byte b:digest) {
+			sb.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,167 @@
+package org.forwoods.deco.server.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.forwoods.deco.buhlmann.BuhlmannAlgo;
+import org.forwoods.deco.buhlmann.BuhlmannSettings;
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.DivePlan;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.GasIndex;
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.common.PlanPoint;
+import org.forwoods.deco.common.PlanTable;
+import org.forwoods.deco.server.api.GasMix;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.api.PlanSettings;
+import org.forwoods.deco.server.api.UserPoint;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * @author Tom
+ * Calculates requested plans on the plan executor.
+ * Calculated plans are cached as compact plan tables keyed by the {@link PlanKey} of the request
+ * so a plan that has been calculated before is never calculated again while it is cached.
+ * The tables only keep the states planning resumes from unless a request asked for the state of every point,
+ * in which case its plan is calculated again with them if the cached one doesn't have them.
+ * Identical requests arriving while their plan is being calculated wait for that calculation
+ * rather than starting their own.
+ * Requests are validated before anything is calculated - a request the planner can't plan
+ * would otherwise hold a calculation slot until it fails or for ever
+ */
+public class PlanService {
+
+	private final BuhlmannAlgo algo = new BuhlmannAlgo();
+	private final SingleFlight<PlanKey, PlanTable<BuhlmannState>> calculations;
+	private final SingleFlight<PlanKey, PlanTable<BuhlmannState>> stateCalculations;
+	private final Cache<PlanKey, PlanTable<BuhlmannState>> cache;
+	private final Validator validator;
+
+	/**
+	 * @param executor executor to calculate plans on
+	 * @param cache cache of calculated plans
+	 * @param metrics where to record planning metrics
+	 * @param validator validator for requests
+	 */
+	public PlanService(Executor executor, Cache<PlanKey, PlanTable<BuhlmannState>> cache, PlanMetrics metrics,
+			Validator validator) {
+		this.calculations = new SingleFlight<>(executor);
+		this.stateCalculations = new SingleFlight<>(executor);
+		this.cache = cache;
+		this.validator = validator;
+		algo.setMetrics(metrics);
+	}
+
+	/**
+	 * @param maximumPoints the most result points to cache across all plans
+	 * @return a cache evicting the least recently used plans and recording stats
+	 */
+	public static Cache<PlanKey, PlanTable<BuhlmannState>> newCache(long maximumPoints) {
+		return CacheBuilder.newBuilder()
+				.maximumWeight(maximumPoints)
+				.weigher((PlanKey key, PlanTable<BuhlmannState> table)->table.size())
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @param request the plan to calculate
+	 * @param states whether the plan should be written with the state of each point
+	 * @return the plan - completed on the plan executor unless it was cached.
+	 * Fails with a RejectedExecutionException if the executor is full.
+	 * Cancelling it gives up waiting and stops the calculation if no other request is waiting for it
+	 * @throws IllegalArgumentException if the request can't be planned
+	 */
+	public CompletableFuture<CalculatedPlan> submit(PlanRequest request, boolean states) {
+		DivePlan<BuhlmannSettings, BuhlmannState> userPlan = toDivePlan(request);
+		PlanKey key = PlanKey.of(userPlan);
+		PlanTable<BuhlmannState> table = cache.getIfPresent(key);
+		if (table!=null && (!states || table.hasStates())) {
+			return CompletableFuture.completedFuture(new CalculatedPlan(table, states));
+		}
+		CompletableFuture<PlanTable<BuhlmannState>> calculation = (states?stateCalculations:calculations)
+				.run(key, ()->calculate(key, userPlan, states));
+		CompletableFuture<CalculatedPlan> plan = calculation.thenApply(t->new CalculatedPlan(t, states));
+		plan.whenComplete((p, t)->{
+			if (plan.isCancelled()) {
+				//stops the calculation if no one else is waiting for it
+				calculation.cancel(false);
+			}
+		});
+		return plan;
+	}
+
+	private PlanTable<BuhlmannState> calculate(PlanKey key, DivePlan<BuhlmannSettings, BuhlmannState> userPlan,
+			boolean states) {
+		//a request can miss the cache just before an identical run caches its plan and
+		//start this run just after that one finishes
+		PlanTable<BuhlmannState> table = cache.getIfPresent(key);
+		if (table!=null && (!states || table.hasStates())) {
+			return table;
+		}
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = algo.calculateDive(userPlan);
+		table = states?plan.compact(algo.getStateCodec()):plan.compactForResume(algo.getStateCodec());
+		cache.put(key, table);
+		return table;
+	}
+
+	/**
+	 * @return the number of requests that waited for an identical request's calculation
+	 */
+	public long sharedCalculations() {
+		return calculations.getShared()+stateCalculations.getShared();
+	}
+
+	public CacheStats cacheStats() {
+		return cache.stats();
+	}
+
+	DivePlan<BuhlmannSettings, BuhlmannState> toDivePlan(PlanRequest request) {
+		Set<ConstraintViolation<PlanRequest>> violations = validator.validate(request);
+		if (!violations.isEmpty()) {
+			//sorted so the message is the same every time
+			Set<String> messages = new TreeSet<>();
+			for (ConstraintViolation<PlanRequest> v:violations) {
+				messages.add(v.getPropertyPath()+" "+v.getMessage());
+			}
+			throw new IllegalArgumentException(String.join(", ", messages));
+		}
+		BuhlmannSettings settings = request.settings==null?new PlanSettings():request.settings;
+		DivePlan<BuhlmannSettings, BuhlmannState> plan = new DivePlan<>();
+		plan.setAlgoSettings(settings);
+		List<PlanPoint<BuhlmannState>> points = new ArrayList<>(request.points.size());
+		for (UserPoint p:request.points) {
+			points.add(p.toPlanPoint());
+		}
+		plan.setUserPoints(points);
+		List<Gas> gases = new ArrayList<>(request.gases.size());
+		for (GasMix g:request.gases) {
+			gases.add(g.toGas());
+		}
+		plan.setGases(gases);
+
+		//plans start at the surface
+		GasIndex gasIndex = new GasIndex(gases, settings);
+		if (gasIndex.pickBest(0)==null) {
+			throw new IllegalArgumentException("None of the gases can be breathed at the surface");
+		}
+		for (UserPoint p:request.points) {
+			if (gasIndex.pickBest(p.depth)==null) {
+				throw new IllegalArgumentException("None of the gases can be breathed at "+p.depth+"m");
+			}
+		}
+		return plan;
+	}
+
+}
@@ -0,0 +1,178 @@
+package org.forwoods.deco.server.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @author Tom
+ * Runs work on an executor sharing one run between all concurrent callers with the same key.
+ * <p>
+ * Each caller gets its own future so cancelling it doesn't affect the other callers.
+ * The callers of a run are counted and once every one of them has cancelled the run is abandoned -
+ * it is skipped if it hasn't started and its thread is interrupted if it has, so work that checks
+ * for interruption stops.
+ * A failure of the shared run, including the executor rejecting it, fails every caller's future.
+ * Once the run completes or is abandoned the key is free to be run again.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+	private final Executor executor;
+	private final ConcurrentHashMap<K, Flight> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder shared = new LongAdder();
+
+	public SingleFlight(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param key the key of the work
+	 * @param work the work - only run if there isn't already a run for the key
+	 * @return the result of the work - cancel it to give up waiting
+	 */
+	public CompletableFuture<V> run(K key, Supplier<V> work) {
+		while (true) {
+			Flight created = new Flight(key);
+			Flight existing = inFlight.putIfAbsent(key, created);
+			if (existing==null) {
+				CompletableFuture<V> caller = created.caller();
+				start(created, work);
+				return caller;
+			}
+			if (existing.join()) {
+				shared.increment();
+				return existing.caller();
+			}
+			//abandoned by all its callers but not removed yet
+			inFlight.remove(key, existing);
+		}
+	}
+
+	private void start(Flight flight, Supplier<V> work) {
+		try {
+			executor.execute(()->{
+				if (!flight.start()) {
+					//every caller gave up while it was queued
+					return;
+				}
+				try {
+					flight.result.complete(work.get());
+				}
+				catch (Throwable t) {
+					flight.result.completeExceptionally(t);
+				}
+				finally {
+					flight.finish();
+					inFlight.remove(flight.key, flight);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			inFlight.remove(flight.key, flight);
+			//anyone who joined in the meantime gets the rejection too
+			flight.result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * @return the number of calls that shared an earlier call's run
+	 */
+	public long getShared() {
+		return shared.sum();
+	}
+
+	/**
+	 * @return the number of runs in progress
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	/**
+	 * One run and the callers waiting for it
+	 */
+	private class Flight {
+
+		private final K key;
+		private final CompletableFuture<V> result = new CompletableFuture<>();
+		private int waiters = 1;
+		private Thread runner;
+		private boolean abandoned;
+
+		Flight(K key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return false if the run has been abandoned and can't be joined
+		 */
+		synchronized boolean join() {
+			if (abandoned) {
+				return false;
+			}
+			waiters++;
+			return true;
+		}
+
+		/**
+		 * @return false if the run has been abandoned and mustn't start
+		 */
+		synchronized boolean start() {
+			if (abandoned) {
+				return false;
+			}
+			runner = Thread.currentThread();
+			return true;
+		}
+
+		synchronized void finish() {
+			runner = null;
+			if (abandoned) {
+				//don't leave our interrupt for the executor's next task
+				Thread.interrupted();
+			}
+		}
+
+		private void leave() {
+			synchronized (this) {
+				if (--waiters>0 || result.isDone()) {
+					return;
+				}
+				abandoned = true;
+				inFlight.remove(key, this);
+				if (runner!=null) {
+					runner.interrupt();
+				}
+			}
+			result.cancel(false);
+		}
+
+		/**
+		 * @return a future of the result for one caller
+		 */
+		CompletableFuture<V> caller() {
+			CompletableFuture<V> caller = new CompletableFuture<>();
+			result.whenComplete((v, t)->{
+				if (t==null) {
+					caller.complete(v);
+				}
+				else {
+					caller.completeExceptionally(t);
+				}
+			});
+			caller.whenComplete((v, t)->{
+				if (caller.isCancelled()) {
+					leave();
+				}
+			});
+			return caller;
+		}
+	}
+
+}
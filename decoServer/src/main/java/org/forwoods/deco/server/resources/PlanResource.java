@@ -0,0 +1,96 @@
+package org.forwoods.deco.server.resources;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.forwoods.deco.server.api.PlanMediaType;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.core.CalculatedPlan;
+import org.forwoods.deco.server.core.PlanService;
+
+/**
+ * @author Tom
+ * POST /plans calculates a plan.
+ * The request is suspended while the plan is calculated on the plan executor so
+ * jetty threads are never held by a calculation. A request that can't be planned gets a 400
+ * with the reason, a timeout gives a 503 and, if the server
+ * is already calculating as many plans as it will admit, the request gets a 429 with Retry-After.
+ * The plan is streamed back as JSON or, if the client accepts it, the binary encoding.
+ * ?states=true includes the tissue state of every point
+ */
+@Path("/plans")
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, PlanMediaType.BINARY})
+public class PlanResource {
+
+	static final int TOO_MANY_REQUESTS = 429;
+
+	private final PlanService planService;
+	private final int timeoutSeconds;
+	private final int retryAfterSeconds;
+
+	public PlanResource(PlanService planService, int timeoutSeconds, int retryAfterSeconds) {
+		this.planService = planService;
+		this.timeoutSeconds = timeoutSeconds;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	@POST
+	public void plan(@QueryParam("states") boolean states, @NotNull PlanRequest request,
+			@Suspended AsyncResponse response) {
+		CompletableFuture<CalculatedPlan> plan;
+		try {
+			//validated by the service so every reason is a 400
+			plan = planService.submit(request, states);
+		}
+		catch (IllegalArgumentException e) {
+			response.resume(Response.status(Status.BAD_REQUEST)
+					.type(MediaType.TEXT_PLAIN)
+					.entity(e.getMessage())
+					.build());
+			return;
+		}
+		response.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+		response.setTimeoutHandler(r->{
+			//a shared calculation carries on for the others and is only stopped once they all give up
+			plan.cancel(false);
+			r.resume(new ServiceUnavailableException("Plan took too long"));
+		});
+		plan.whenComplete((result, error)->{
+			if (error==null) {
+				response.resume(result);
+				return;
+			}
+			Throwable cause = error instanceof CompletionException?error.getCause():error;
+			if (cause instanceof RejectedExecutionException) {
+				//busy - tell the client when to try again rather than queueing it
+				response.resume(Response.status(TOO_MANY_REQUESTS)
+						.header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+						.type(MediaType.TEXT_PLAIN)
+						.entity(cause.getMessage())
+						.build());
+			}
+			else if (!(cause instanceof CancellationException)) {
+				response.resume(cause);
+			}
+		});
+	}
+
+}
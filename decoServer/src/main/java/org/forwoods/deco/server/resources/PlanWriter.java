@@ -0,0 +1,59 @@
+package org.forwoods.deco.server.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.forwoods.deco.server.api.PlanMediaType;
+import org.forwoods.deco.server.core.CalculatedPlan;
+import org.forwoods.deco.server.core.PlanBinaryEncoder;
+import org.forwoods.deco.server.core.PlanJsonEncoder;
+
+/**
+ * @author Tom
+ * Streams calculated plans to the client as JSON or the binary encoding depending on the Accept header
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, PlanMediaType.BINARY})
+public class PlanWriter implements MessageBodyWriter<CalculatedPlan> {
+
+	private final PlanJsonEncoder json;
+	private final PlanBinaryEncoder binary;
+
+	public PlanWriter(PlanJsonEncoder json, PlanBinaryEncoder binary) {
+		this.json = json;
+		this.binary = binary;
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return CalculatedPlan.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public long getSize(CalculatedPlan t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(CalculatedPlan t, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+			throws IOException, WebApplicationException {
+		if (mediaType.isCompatible(PlanMediaType.BINARY_TYPE)) {
+			binary.write(t, entityStream);
+		}
+		else {
+			json.write(t, entityStream);
+		}
+	}
+
+}
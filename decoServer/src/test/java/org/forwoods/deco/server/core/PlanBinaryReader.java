@@ -0,0 +1,100 @@
+package org.forwoods.deco.server.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the format written by {@link PlanBinaryEncoder} back so it can be checked against the plan
+ */
+class PlanBinaryReader {
+
+	int version;
+	int[] o2;
+	int[] he;
+	int width;
+	final List<Row> rows = new ArrayList<>();
+	double[] gasUsed;
+
+	static class Row {
+		int flags;
+		int gas;//ordinal+1, 0 for none
+		double depth;
+		double time;
+		double otu;
+		double cns;
+		double[] state;
+	}
+
+	static PlanBinaryReader read(byte[] bytes) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+		PlanBinaryReader plan = new PlanBinaryReader();
+		plan.version = data.readUnsignedByte();
+		int gases = (int)readVarint(data);
+		plan.o2 = new int[gases];
+		plan.he = new int[gases];
+		for (int i=0;i<gases;i++) {
+			plan.o2[i] = data.readUnsignedByte();
+			plan.he[i] = data.readUnsignedByte();
+		}
+		plan.width = (int)readVarint(data);
+
+		int size = (int)readVarint(data);
+		long lastDepth = 0;
+		long lastTime = 0;
+		for (int i=0;i<size;i++) {
+			Row row = new Row();
+			row.flags = data.readUnsignedByte();
+			row.gas = (int)readVarint(data);
+			if ((row.flags&PlanBinaryEncoder.RAW_DEPTH)!=0) {
+				row.depth = data.readDouble();
+			}
+			else {
+				lastDepth += unzigzag(readVarint(data));
+				row.depth = lastDepth/100.0;
+			}
+			if ((row.flags&PlanBinaryEncoder.RAW_TIME)!=0) {
+				row.time = data.readDouble();
+			}
+			else {
+				lastTime += unzigzag(readVarint(data));
+				row.time = lastTime/100.0;
+			}
+			row.otu = data.readDouble();
+			row.cns = data.readDouble();
+			if ((row.flags&PlanBinaryEncoder.STATE)!=0) {
+				row.state = new double[plan.width];
+				for (int s=0;s<plan.width;s++) {
+					row.state[s] = data.readDouble();
+				}
+			}
+			plan.rows.add(row);
+		}
+
+		plan.gasUsed = new double[gases];
+		for (int i=0;i<gases;i++) {
+			plan.gasUsed[i] = data.readDouble();
+		}
+		if (data.read()!=-1) {
+			throw new IOException("Bytes left after the plan");
+		}
+		return plan;
+	}
+
+	static long readVarint(DataInputStream data) throws IOException {
+		long value = 0;
+		for (int shift=0;;shift+=7) {
+			int b = data.readUnsignedByte();
+			value |= (long)(b&0x7F)<<shift;
+			if ((b&0x80)==0) {
+				return value;
+			}
+		}
+	}
+
+	static long unzigzag(long value) {
+		return (value>>>1)^-(value&1);
+	}
+}
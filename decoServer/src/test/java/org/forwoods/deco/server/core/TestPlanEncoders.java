@@ -0,0 +1,185 @@
+package org.forwoods.deco.server.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.Gas;
+import org.forwoods.deco.common.Gas.GAS;
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.common.PlanTable;
+import org.forwoods.deco.server.api.GasMix;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.api.UserPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.dropwizard.jersey.validation.Validators;
+
+public class TestPlanEncoders {
+
+	private PlanService service;
+	private ObjectMapper mapper;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new PlanService(Runnable::run, PlanService.newCache(10000), PlanMetrics.NONE,
+				Validators.newValidator());
+		mapper = new ObjectMapper();
+	}
+
+	private CalculatedPlan plan(double depth, double time, boolean states) {
+		PlanRequest request = new PlanRequest();
+		request.points = new ArrayList<>(Arrays.asList(new UserPoint(depth, time)));
+		request.gases = new ArrayList<>(Arrays.asList(new GasMix(21, 0), new GasMix(50, 0)));
+		return service.submit(request, states).join();
+	}
+
+	private PlanBinaryReader binary(CalculatedPlan plan) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PlanBinaryEncoder().write(plan, out);
+		return PlanBinaryReader.read(out.toByteArray());
+	}
+
+	private JsonNode json(CalculatedPlan plan) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PlanJsonEncoder(mapper.getFactory()).write(plan, out);
+		return mapper.readTree(out.toByteArray());
+	}
+
+	private void assertBinaryRoundTrip(CalculatedPlan plan) throws Exception {
+		PlanTable<BuhlmannState> table = plan.getTable();
+		PlanBinaryReader read = binary(plan);
+		assertThat(read.version).isEqualTo(PlanBinaryEncoder.VERSION);
+
+		List<Gas> gases = table.getGases();
+		assertThat(read.o2).hasSize(gases.size());
+		for (int i=0;i<gases.size();i++) {
+			assertThat(read.o2[i]).isEqualTo(Math.round(gases.get(i).getPercent(GAS.O2)*100));
+			assertThat(read.he[i]).isEqualTo(Math.round(gases.get(i).getPercent(GAS.HE)*100));
+		}
+
+		assertThat(read.width).isEqualTo(plan.writeStates()?table.getStateWidth():0);
+		assertThat(read.rows).hasSize(table.size());
+		double[] state = new double[table.getStateWidth()];
+		for (int row=0;row<table.size();row++) {
+			PlanBinaryReader.Row r = read.rows.get(row);
+			assertThat(r.depth).isEqualTo(table.getDepth(row));
+			assertThat(r.time).isEqualTo(table.getTime(row));
+			assertThat(r.otu).isEqualTo(table.getOTU(row));
+			assertThat(r.cns).isEqualTo(table.getCNS(row));
+			assertThat(r.gas-1).isEqualTo(gases.indexOf(table.getGas(row)));
+			assertThat((r.flags&PlanBinaryEncoder.DECO)!=0).isEqualTo(table.isDeco(row));
+			assertThat((r.flags&PlanBinaryEncoder.RAW_DEPTH)!=0)
+				.isEqualTo(PlanBinaryEncoder.hundredths(table.getDepth(row))==Long.MIN_VALUE);
+			assertThat((r.flags&PlanBinaryEncoder.RAW_TIME)!=0)
+				.isEqualTo(PlanBinaryEncoder.hundredths(table.getTime(row))==Long.MIN_VALUE);
+			if (plan.writeStates()) {
+				table.copyState(row, state, 0);
+				assertThat(r.state).containsExactly(state);
+			}
+			else {
+				assertThat(r.state).isNull();
+			}
+		}
+		for (int i=0;i<gases.size();i++) {
+			assertThat(read.gasUsed[i]).isEqualTo(table.getGasUsed(table.size()-1, i));
+		}
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		CalculatedPlan plan = plan(45, 25, false);
+		assertBinaryRoundTrip(plan);
+		PlanBinaryReader read = binary(plan);
+		assertThat(read.rows.get(read.rows.size()-1).otu).isGreaterThan(0);
+		assertThat(read.rows.get(read.rows.size()-1).cns).isGreaterThan(0);
+		//a deco plan so the deco flag is set on some rows
+		assertThat(binary(plan).rows).extracting(r->r.flags&PlanBinaryEncoder.DECO).contains(PlanBinaryEncoder.DECO, 0);
+	}
+
+	@Test
+	public void testBinaryRoundTripWithStates() throws Exception {
+		CalculatedPlan plan = plan(45, 25, true);
+		assertThat(plan.writeStates()).isTrue();
+		assertBinaryRoundTrip(plan);
+	}
+
+	@Test
+	public void testRawValues() throws Exception {
+		//a depth that isn't whole centimetres is written raw
+		CalculatedPlan plan = plan(30.123, 20, false);
+		PlanBinaryReader read = binary(plan);
+		assertThat(read.rows).extracting(r->r.flags&PlanBinaryEncoder.RAW_DEPTH).contains(PlanBinaryEncoder.RAW_DEPTH, 0);
+		assertBinaryRoundTrip(plan);
+	}
+
+	@Test
+	public void testVarints() throws Exception {
+		for (long v:new long[] {0, 1, -1, 63, -64, 64, 1000, -1000, Long.MAX_VALUE, Long.MIN_VALUE}) {
+			assertThat(PlanBinaryReader.unzigzag(PlanBinaryEncoder.zigzag(v))).isEqualTo(v);
+		}
+		assertThat(PlanBinaryEncoder.zigzag(-1)).isEqualTo(1);
+		assertThat(PlanBinaryEncoder.zigzag(1)).isEqualTo(2);
+		assertThat(PlanBinaryEncoder.hundredths(12.34)).isEqualTo(1234);
+		assertThat(PlanBinaryEncoder.hundredths(-0.5)).isEqualTo(-50);
+		assertThat(PlanBinaryEncoder.hundredths(1.0/3)).isEqualTo(Long.MIN_VALUE);
+	}
+
+	@Test
+	public void testJsonRoundTrip() throws Exception {
+		CalculatedPlan plan = plan(45, 25, true);
+		PlanTable<BuhlmannState> table = plan.getTable();
+		JsonNode json = json(plan);
+		JsonNode points = json.get("points");
+		assertThat(points.size()).isEqualTo(table.size());
+		double[] state = new double[table.getStateWidth()];
+		for (int row=0;row<table.size();row++) {
+			JsonNode p = points.get(row);
+			assertThat(p.get("depth").asDouble()).isEqualTo(table.getDepth(row));
+			assertThat(p.get("time").asDouble()).isEqualTo(table.getTime(row));
+			assertThat(p.get("gas").asText()).isEqualTo(String.valueOf(table.getGas(row)));
+			assertThat(p.get("deco").asBoolean()).isEqualTo(table.isDeco(row));
+			assertThat(p.get("otu").asDouble()).isEqualTo(table.getOTU(row));
+			assertThat(p.get("cns").asDouble()).isEqualTo(table.getCNS(row));
+			table.copyState(row, state, 0);
+			double[] read = new double[p.get("state").size()];
+			for (int s=0;s<read.length;s++) {
+				read[s] = p.get("state").get(s).asDouble();
+			}
+			assertThat(read).containsExactly(state);
+		}
+		int last = table.size()-1;
+		List<Gas> gases = table.getGases();
+		for (int i=0;i<gases.size();i++) {
+			assertThat(json.get("gasUsed").get(gases.get(i).toString()).asDouble()).isEqualTo(table.getGasUsed(last, i));
+		}
+		assertThat(json.get("runtime").asDouble()).isEqualTo(table.getTime(last));
+
+		//without states
+		assertThat(json(plan(45, 25, false)).get("points").get(0).has("state")).isFalse();
+	}
+
+	@Test
+	public void testBinaryMatchesJson() throws Exception {
+		CalculatedPlan plan = plan(45, 25, false);
+		JsonNode points = json(plan).get("points");
+		PlanBinaryReader read = binary(plan);
+		for (int row=0;row<read.rows.size();row++) {
+			PlanBinaryReader.Row r = read.rows.get(row);
+			JsonNode p = points.get(row);
+			assertThat(r.depth).isEqualTo(p.get("depth").asDouble());
+			assertThat(r.time).isEqualTo(p.get("time").asDouble());
+			assertThat(r.otu).isEqualTo(p.get("otu").asDouble());
+			assertThat(r.cns).isEqualTo(p.get("cns").asDouble());
+			assertThat(r.gas==0?"null":read.o2[r.gas-1]+"/"+read.he[r.gas-1]).isEqualTo(p.get("gas").asText());
+		}
+	}
+}
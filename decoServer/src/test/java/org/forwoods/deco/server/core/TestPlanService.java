@@ -0,0 +1,50 @@
+package org.forwoods.deco.server.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.forwoods.deco.buhlmann.BuhlmannState;
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.common.PlanTable;
+import org.forwoods.deco.server.api.GasMix;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.api.UserPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.dropwizard.jersey.validation.Validators;
+
+public class TestPlanService {
+
+	private PlanService service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new PlanService(Runnable::run, PlanService.newCache(10000), PlanMetrics.NONE,
+				Validators.newValidator());
+	}
+
+	private PlanRequest request() {
+		PlanRequest request = new PlanRequest();
+		request.points = new ArrayList<>(Arrays.asList(new UserPoint(45, 25)));
+		request.gases = new ArrayList<>(Arrays.asList(new GasMix(21, 0), new GasMix(50, 0)));
+		return request;
+	}
+
+	@Test
+	public void testCachedWithoutStates() {
+		PlanTable<BuhlmannState> plain = service.submit(request(), false).join().getTable();
+		//only the states planning resumes from are cached
+		assertThat(plain.hasStates()).isFalse();
+		assertThat(plain.hasState(plain.size()-1)).isTrue();
+		assertThat(service.submit(request(), false).join().getTable()).isSameAs(plain);
+
+		//asking for states calculates them and caches them for everyone
+		CalculatedPlan withStates = service.submit(request(), true).join();
+		assertThat(withStates.writeStates()).isTrue();
+		assertThat(withStates.getTable().size()).isEqualTo(plain.size());
+		assertThat(service.submit(request(), false).join().getTable()).isSameAs(withStates.getTable());
+	}
+}
@@ -0,0 +1,89 @@
+package org.forwoods.deco.server.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.server.api.GasMix;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.api.PlanSettings;
+import org.forwoods.deco.server.api.UserPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.dropwizard.jersey.validation.Validators;
+
+public class TestPlanValidation {
+
+	private PlanService service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new PlanService(Runnable::run, PlanService.newCache(10000), PlanMetrics.NONE,
+				Validators.newValidator());
+	}
+
+	private PlanRequest request(GasMix... gases) {
+		PlanRequest request = new PlanRequest();
+		request.points = new ArrayList<>(Arrays.asList(new UserPoint(40, 25)));
+		request.gases = new ArrayList<>(Arrays.asList(gases));
+		return request;
+	}
+
+	@Test
+	public void testValidRequest() {
+		PlanRequest request = request(new GasMix(21, 0), new GasMix(50, 0));
+		request.settings = new PlanSettings();
+		assertThat(service.toDivePlan(request).getGases()).hasSize(2);
+		assertThat(service.submit(request, false).join().getTable().size()).isGreaterThan(3);
+	}
+
+	@Test
+	public void testSettingsBounds() {
+		PlanRequest request = request(new GasMix(21, 0));
+		request.settings = new PlanSettings();
+		request.settings.stepSize = 0;
+		//a step size of 0 would never find the next stop
+		assertThatThrownBy(()->service.toDivePlan(request))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("settings.stepSize");
+
+		request.settings = new PlanSettings();
+		request.settings.ascentRate = 0;
+		assertThatThrownBy(()->service.toDivePlan(request)).hasMessageContaining("settings.ascentRate");
+
+		request.settings = new PlanSettings();
+		request.settings.gfLow = 0.9f;
+		request.settings.gfHigh = 0.7f;
+		assertThatThrownBy(()->service.toDivePlan(request)).hasMessageContaining("gfLow");
+	}
+
+	@Test
+	public void testGasMixes() {
+		assertThatThrownBy(()->service.toDivePlan(request(new GasMix(21, 0), new GasMix(50, 60))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("gases[1]");
+	}
+
+	@Test
+	public void testBreathableAtStart() {
+		//hypoxic - can't be breathed at the surface
+		assertThatThrownBy(()->service.toDivePlan(request(new GasMix(10, 70))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("surface");
+		//too much oxygen for the bottom
+		assertThatThrownBy(()->service.toDivePlan(request(new GasMix(100, 0))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("40.0m");
+	}
+
+	@Test
+	public void testPoints() {
+		PlanRequest request = request(new GasMix(21, 0));
+		request.points.add(new UserPoint(-5, 30));
+		assertThatThrownBy(()->service.toDivePlan(request)).hasMessageContaining("points[1].depth");
+	}
+}
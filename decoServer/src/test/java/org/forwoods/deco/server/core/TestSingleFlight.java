@@ -0,0 +1,132 @@
+package org.forwoods.deco.server.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSingleFlight {
+
+	//runs nothing until asked so calls can be made while a run is in flight
+	private final List<Runnable> queued = new ArrayList<>();
+	private final Executor queue = queued::add;
+	private final AtomicInteger runs = new AtomicInteger();
+	private SingleFlight<String, Integer> flight;
+
+	@Before
+	public void setUp() throws Exception {
+		flight = new SingleFlight<>(queue);
+	}
+
+	private void runQueued() {
+		List<Runnable> tasks = new ArrayList<>(queued);
+		queued.clear();
+		tasks.forEach(Runnable::run);
+	}
+
+	private Integer count() {
+		return runs.incrementAndGet();
+	}
+
+	@Test
+	public void testConcurrentCallersShareARun() {
+		CompletableFuture<Integer> first = flight.run("a", this::count);
+		CompletableFuture<Integer> second = flight.run("a", this::count);
+		CompletableFuture<Integer> other = flight.run("b", this::count);
+		assertThat(flight.getShared()).isEqualTo(1);
+		assertThat(flight.getInFlight()).isEqualTo(2);
+		assertThat(queued).hasSize(2);
+
+		runQueued();
+		assertThat(runs.get()).isEqualTo(2);
+		assertThat(second.join()).isEqualTo(first.join());
+		assertThat(other.join()).isNotEqualTo(first.join());
+		assertThat(flight.getInFlight()).isEqualTo(0);
+
+		//once finished the key runs again
+		CompletableFuture<Integer> again = flight.run("a", this::count);
+		runQueued();
+		assertThat(again.join()).isEqualTo(3);
+	}
+
+	@Test
+	public void testFailure() {
+		CompletableFuture<Integer> first = flight.run("a", ()->{throw new IllegalStateException("failed");});
+		CompletableFuture<Integer> second = flight.run("a", this::count);
+		runQueued();
+		for (CompletableFuture<Integer> f:Arrays.asList(first, second)) {
+			assertThatThrownBy(f::join).isInstanceOf(CompletionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		}
+		assertThat(runs.get()).isEqualTo(0);
+		assertThat(flight.getInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void testRejected() {
+		flight = new SingleFlight<>(r->{throw new RejectedExecutionException("full");});
+		CompletableFuture<Integer> rejected = flight.run("a", this::count);
+		assertThatThrownBy(rejected::join).isInstanceOf(CompletionException.class)
+			.hasCauseInstanceOf(RejectedExecutionException.class);
+		assertThat(flight.getInFlight()).isEqualTo(0);
+		assertThat(runs.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void testCancellingOneCaller() {
+		CompletableFuture<Integer> first = flight.run("a", this::count);
+		CompletableFuture<Integer> second = flight.run("a", this::count);
+		first.cancel(false);
+		assertThat(flight.getInFlight()).isEqualTo(1);
+		runQueued();
+		assertThat(second.join()).isEqualTo(1);
+	}
+
+	@Test
+	public void testCancellingEveryCallerSkipsTheRun() {
+		CompletableFuture<Integer> first = flight.run("a", this::count);
+		CompletableFuture<Integer> second = flight.run("a", this::count);
+		first.cancel(false);
+		second.cancel(false);
+		assertThat(flight.getInFlight()).isEqualTo(0);
+
+		//a new caller gets a run of its own
+		CompletableFuture<Integer> third = flight.run("a", this::count);
+		runQueued();
+		assertThat(runs.get()).isEqualTo(1);
+		assertThat(third.join()).isEqualTo(1);
+	}
+
+	@Test
+	public void testCancellingEveryCallerInterruptsTheRun() throws Exception {
+		flight = new SingleFlight<>(r->new Thread(r).start());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<Integer> waiting = flight.run("a", ()->{
+			started.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			}
+			catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return 0;
+		});
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		waiting.cancel(false);
+		assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(flight.getInFlight()).isEqualTo(0);
+	}
+}
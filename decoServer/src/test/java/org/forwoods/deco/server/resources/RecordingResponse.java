@@ -0,0 +1,114 @@
+package org.forwoods.deco.server.resources;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+
+/**
+ * An async response that records what it was resumed with
+ */
+class RecordingResponse implements AsyncResponse {
+
+	private final CountDownLatch resumed = new CountDownLatch(1);
+	private volatile Object result;
+	private TimeoutHandler timeoutHandler;
+
+	/**
+	 * @return what the response was resumed with - waits for it
+	 */
+	Object result() throws InterruptedException {
+		if (!resumed.await(10, TimeUnit.SECONDS)) {
+			throw new AssertionError("Response never resumed");
+		}
+		return result;
+	}
+
+	/**
+	 * Time the response out as the container would
+	 */
+	void timeout() {
+		timeoutHandler.handleTimeout(this);
+	}
+
+	@Override
+	public boolean resume(Object response) {
+		if (resumed.getCount()==0) {
+			return false;
+		}
+		result = response;
+		resumed.countDown();
+		return true;
+	}
+
+	@Override
+	public boolean resume(Throwable response) {
+		return resume((Object)response);
+	}
+
+	@Override
+	public boolean cancel() {
+		return false;
+	}
+
+	@Override
+	public boolean cancel(int retryAfter) {
+		return false;
+	}
+
+	@Override
+	public boolean cancel(Date retryAfter) {
+		return false;
+	}
+
+	@Override
+	public boolean isSuspended() {
+		return resumed.getCount()>0;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return resumed.getCount()==0;
+	}
+
+	@Override
+	public boolean setTimeout(long time, TimeUnit unit) {
+		return true;
+	}
+
+	@Override
+	public void setTimeoutHandler(TimeoutHandler handler) {
+		timeoutHandler = handler;
+	}
+
+	@Override
+	public Collection<Class<?>> register(Class<?> callback) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public Collection<Class<?>> register(Object callback) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+		return Collections.emptyMap();
+	}
+
+}
@@ -0,0 +1,121 @@
+package org.forwoods.deco.server.resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.forwoods.deco.common.PlanMetrics;
+import org.forwoods.deco.server.api.GasMix;
+import org.forwoods.deco.server.api.PlanRequest;
+import org.forwoods.deco.server.api.PlanSettings;
+import org.forwoods.deco.server.api.UserPoint;
+import org.forwoods.deco.server.core.CalculatedPlan;
+import org.forwoods.deco.server.core.PlanService;
+import org.junit.Test;
+
+import io.dropwizard.jersey.validation.Validators;
+
+public class TestPlanResource {
+
+	private PlanResource resource(Executor executor) {
+		return resource(executor, PlanMetrics.NONE);
+	}
+
+	private PlanResource resource(Executor executor, PlanMetrics metrics) {
+		PlanService service = new PlanService(executor, PlanService.newCache(10000), metrics,
+				Validators.newValidator());
+		return new PlanResource(service, 30, 7);
+	}
+
+	private PlanRequest request() {
+		PlanRequest request = new PlanRequest();
+		request.points = new ArrayList<>(Arrays.asList(new UserPoint(30, 20)));
+		request.gases = new ArrayList<>(Arrays.asList(new GasMix(21, 0)));
+		return request;
+	}
+
+	@Test
+	public void testPlan() throws Exception {
+		RecordingResponse response = new RecordingResponse();
+		resource(Runnable::run).plan(false, request(), response);
+		assertThat(response.result()).isInstanceOf(CalculatedPlan.class);
+	}
+
+	@Test
+	public void testBadRequest() throws Exception {
+		PlanRequest request = request();
+		request.settings = new PlanSettings();
+		request.settings.stepSize = 0;
+		RecordingResponse response = new RecordingResponse();
+		resource(r->{throw new AssertionError("nothing should be calculated");}).plan(false, request, response);
+		Response result = (Response)response.result();
+		assertThat(result.getStatus()).isEqualTo(400);
+		assertThat((String)result.getEntity()).contains("stepSize");
+	}
+
+	@Test
+	public void testNullElements() throws Exception {
+		PlanRequest request = request();
+		request.points.add(null);
+		RecordingResponse response = new RecordingResponse();
+		resource(r->{throw new AssertionError("nothing should be calculated");}).plan(false, request, response);
+		Response result = (Response)response.result();
+		assertThat(result.getStatus()).isEqualTo(400);
+		assertThat((String)result.getEntity()).contains("points must not contain null");
+
+		request = request();
+		request.gases.add(null);
+		response = new RecordingResponse();
+		resource(r->{throw new AssertionError("nothing should be calculated");}).plan(false, request, response);
+		result = (Response)response.result();
+		assertThat(result.getStatus()).isEqualTo(400);
+		assertThat((String)result.getEntity()).contains("gases must not contain null");
+	}
+
+	@Test
+	public void testBusy() throws Exception {
+		RecordingResponse response = new RecordingResponse();
+		resource(r->{throw new RejectedExecutionException("full");}).plan(false, request(), response);
+		Response result = (Response)response.result();
+		assertThat(result.getStatus()).isEqualTo(PlanResource.TOO_MANY_REQUESTS);
+		assertThat(result.getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		List<Runnable> queued = new ArrayList<>();
+		AtomicInteger calculated = new AtomicInteger();
+		PlanMetrics metrics = new PlanMetrics() {
+			@Override
+			public void time(Phase phase, long nanos) {
+			}
+
+			@Override
+			public void inserted(Inserted point, int count) {
+			}
+
+			@Override
+			public void resultPoints(int count) {
+				calculated.incrementAndGet();
+			}
+		};
+		PlanResource resource = resource(queued::add, metrics);
+		RecordingResponse response = new RecordingResponse();
+		resource.plan(false, request(), response);
+		response.timeout();
+		assertThat(response.result()).isInstanceOf(ServiceUnavailableException.class);
+
+		//no one is waiting for the plan any more so it isn't calculated
+		queued.forEach(Runnable::run);
+		assertThat(calculated.get()).isEqualTo(0);
+	}
+}